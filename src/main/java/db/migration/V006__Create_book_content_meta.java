@@ -0,0 +1,54 @@
+package db.migration;
+
+import library.migration.ChunkedBackfillMigration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// Создание таблицы book_content_meta. Метаданные содержания книги (размер, хэш, тип, количество страниц, дата загрузки)
+// позволяют проверять наличие содержания и формировать заголовки ответа, не читая сам pdf.
+// Метаданные существующих книг вычисляются порциями: каждая порция читает pdf только своих книг
+public class V006__Create_book_content_meta extends ChunkedBackfillMigration {
+    // строки book еще содержат pdf целиком (до V011) - порция ограничена несколькими книгами
+    static final int MAX_CHUNK_SIZE = 20;
+
+    @Override
+    protected String getTable() {
+        return "book";
+    }
+
+    @Override
+    protected int getMaxChunkSize() {
+        return MAX_CHUNK_SIZE;
+    }
+
+    @Override
+    protected void before(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "CREATE TABLE IF NOT EXISTS book_content_meta (" +
+                "book_id bigint NOT NULL, " +
+                "size bigint NOT NULL, " +
+                "sha256 char(64) NOT NULL, " +
+                "mime_type varchar(100) NOT NULL, " +
+                "page_count int NOT NULL, " +
+                "uploaded_at datetime NOT NULL, " +
+                "PRIMARY KEY (book_id), " +
+                "CONSTRAINT fk_content_meta_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")) {
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    protected int migrateChunk(Connection connection, long fromId, long toId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO book_content_meta (book_id, size, sha256, mime_type, page_count, uploaded_at) " +
+                "SELECT id, LENGTH(content), SHA2(content, 256), 'application/pdf', page_count, NOW() FROM book " +
+                "WHERE id BETWEEN ? AND ? AND content IS NOT NULL AND LENGTH(content) > 0")) {
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            return ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package db.migration;
+
+import library.migration.ChunkedBackfillMigration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Вертикальное разделение таблицы book. Содержание (content) и обложка (image), еще не перенесенные в хранилище
+// объектов, переносятся в отдельные таблицы book_content и book_cover. В таблице book остаются только короткие поля,
+// поэтому сортировка, поиск по жанру и подсчет книг не затрагивают страницы с LOB.
+// Данные переносятся порциями, старые столбцы удаляются после переноса всех строк
+public class V011__Split_book_blobs extends ChunkedBackfillMigration {
+    // каждая строка порции - pdf и обложка целиком, поэтому порция ограничена несколькими книгами
+    static final int MAX_CHUNK_SIZE = 20;
+
+    @Override
+    protected String getTable() {
+        return "book";
+    }
+
+    @Override
+    protected int getMaxChunkSize() {
+        return MAX_CHUNK_SIZE;
+    }
+
+    @Override
+    protected void before(Connection connection) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS book_content (" +
+                "book_id bigint NOT NULL, " +
+                "content longblob NOT NULL, " +
+                "PRIMARY KEY (book_id), " +
+                "CONSTRAINT fk_content_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        execute(connection, "CREATE TABLE IF NOT EXISTS book_cover (" +
+                "book_id bigint NOT NULL, " +
+                "image longblob NOT NULL, " +
+                "PRIMARY KEY (book_id), " +
+                "CONSTRAINT fk_cover_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+    }
+
+    @Override
+    protected int migrateChunk(Connection connection, long fromId, long toId) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO book_content (book_id, content) SELECT id, content FROM book " +
+                "WHERE id BETWEEN ? AND ? AND content IS NOT NULL AND LENGTH(content) > 0")) {
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            rows += ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO book_cover (book_id, image) SELECT id, image FROM book " +
+                "WHERE id BETWEEN ? AND ? AND image IS NOT NULL AND LENGTH(image) > 0")) {
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            rows += ps.executeUpdate();
+        }
+        return rows;
+    }
+
+    // столбцы уже могли быть удалены, если перенос прервался после этого шага
+    @Override
+    protected void after(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'book' AND column_name IN ('content', 'image')");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            if (rs.getInt(1) == 0) return;
+        }
+        execute(connection, "ALTER TABLE book DROP COLUMN content, DROP COLUMN image");
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.executeUpdate();
+        }
+    }
+}
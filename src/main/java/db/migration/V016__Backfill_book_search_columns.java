@@ -0,0 +1,22 @@
+package db.migration;
+
+import library.migration.NormalizedColumnsBackfill;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Заполнение нормализованных столбцов поиска (V015) у существующих книг
+public class V016__Backfill_book_search_columns extends NormalizedColumnsBackfill {
+
+    @Override
+    protected String getTable() {
+        return "book";
+    }
+
+    @Override
+    protected Map<String, String> getColumns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("name", "search_name");
+        return columns;
+    }
+}
@@ -0,0 +1,23 @@
+package db.migration;
+
+import library.migration.NormalizedColumnsBackfill;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Заполнение нормализованных столбцов поиска (V015) у существующих авторов
+public class V017__Backfill_author_search_columns extends NormalizedColumnsBackfill {
+
+    @Override
+    protected String getTable() {
+        return "author";
+    }
+
+    @Override
+    protected Map<String, String> getColumns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("ru_fio", "search_ru_fio");
+        columns.put("en_fio", "search_en_fio");
+        return columns;
+    }
+}
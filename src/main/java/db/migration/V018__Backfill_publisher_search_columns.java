@@ -0,0 +1,23 @@
+package db.migration;
+
+import library.migration.NormalizedColumnsBackfill;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Заполнение нормализованных столбцов поиска (V015) у существующих издательств
+public class V018__Backfill_publisher_search_columns extends NormalizedColumnsBackfill {
+
+    @Override
+    protected String getTable() {
+        return "publisher";
+    }
+
+    @Override
+    protected Map<String, String> getColumns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("ru_name", "search_ru_name");
+        columns.put("en_name", "search_en_name");
+        return columns;
+    }
+}
@@ -0,0 +1,115 @@
+package library.cache;
+
+import library.repository.BookEntityRepo;
+import library.service.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Количество книг (всего и по жанрам) в памяти процесса - вместо запроса COUNT(*) на каждую страницу списка книг.
+// Счетчики загружаются при запуске, изменяются при сохранении и удалении книг (после фиксации транзакции, если она есть)
+// и периодически сверяются с БД (изменения в обход BookEntityService, например вручную в БД, тоже будут учтены)
+@Component
+public class BookCountCache {
+    private static final Logger log = LoggerFactory.getLogger(BookCountCache.class);
+
+    private final BookEntityRepo bookRepo;
+
+    // изменения книг (вместе с изменением счетчиков) выполняются под общей блокировкой, сверка - под исключительной:
+    // иначе сверка, посчитавшая уже сохраненную книгу, могла бы завершиться до того, как ее учтут счетчики
+    private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+    private final Map<Long, Long> genreCounts = new HashMap<>();   // id жанра -> количество книг
+    private long total;
+    private volatile boolean ready;
+
+    public BookCountCache(BookEntityRepo bookRepo) {
+        this.bookRepo = bookRepo;
+    }
+
+    // загрузка счетчиков при запуске и их периодическая сверка с БД
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${library.cache.count.reconcile-ms:600000}",
+               fixedDelayString = "${library.cache.count.reconcile-ms:600000}")
+    public void reconcile() {
+        changeLock.writeLock().lock();
+        try {
+            Map<Long, Long> counts = new HashMap<>();
+            long sum = 0;
+            for (Object[] row : bookRepo.countByGenres()) {
+                long count = ((Number) row[1]).longValue();
+                counts.put(row[0] == null ? null : ((Number) row[0]).longValue(), count);
+                sum += count;
+            }
+
+            synchronized (this) {
+                if (ready && (sum != total || !counts.equals(genreCounts)))
+                    log.warn("Book counts differed from the database: total {} (cached {}), reconciled", sum, total);
+                genreCounts.clear();
+                genreCounts.putAll(counts);
+                total = sum;
+                ready = true;
+            }
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
+    // изменение книг: сохранение или удаление вместе с вызовом saved/deleted выполняется между beginChange и endChange
+    public void beginChange() {
+        changeLock.readLock().lock();
+    }
+
+    public void endChange() {
+        changeLock.readLock().unlock();
+    }
+
+    // счетчики загружены (до этого количество книг считается запросом к БД)
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized long getGenreCount(long genreId) {
+        return genreCounts.getOrDefault(genreId, 0L);
+    }
+
+    // книга добавлена (oldGenreId == null и isNew) или перенесена из жанра oldGenreId в жанр newGenreId
+    public void saved(boolean isNew, Long oldGenreId, Long newGenreId) {
+        if (!isNew && Objects.equals(oldGenreId, newGenreId)) return;
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                if (isNew) total++;
+                else add(oldGenreId, -1);
+                add(newGenreId, 1);
+            }
+        });
+    }
+
+    // книга жанра genreId удалена
+    public void deleted(Long genreId) {
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                total--;
+                add(genreId, -1);
+            }
+        });
+    }
+
+    private void add(Long genreId, long delta) {
+        long count = genreCounts.getOrDefault(genreId, 0L) + delta;
+        if (count > 0) genreCounts.put(genreId, count);
+        else genreCounts.remove(genreId);
+    }
+}
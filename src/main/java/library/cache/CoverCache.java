@@ -0,0 +1,174 @@
+package library.cache;
+
+import library.domain.CoverSize;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Кэш обложек книг в памяти процесса.
+// Байты обложек хранятся вне кучи (direct ByteBuffer), поэтому не нагружают сборщик мусора;
+// суммарный размер закэшированных обложек ограничен бюджетом library.cache.cover.max-bytes,
+// при его превышении вытесняются обложки, к которым дольше всего не обращались (LRU).
+// Там же хранятся изображения спрайтов обложек - по размеру и версии содержимого (ETag), поэтому при изменении
+// обложек старые спрайты не инвалидируются, а просто перестают запрашиваться и вытесняются
+@Component
+public class CoverCache {
+    private final long maxBytes;
+
+    // порядок обхода - порядок обращений: первым идет самый давно использованный элемент
+    private final LinkedHashMap<String, Cover> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+    // номер изменения: растет при каждой инвалидации, чтобы обложка, прочитанная до изменения книги, не попала в кэш после него
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CoverCache(@Value("${library.cache.cover.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // обложка книги указанного размера (size == null - исходная обложка); null, если ее нет в кэше
+    public synchronized Cover get(long bookId, CoverSize size) {
+        return get(key(bookId, size));
+    }
+
+    // текущий номер изменения; берется перед чтением обложки из хранилища и передается в put
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    // поместить обложку, прочитанную при номере изменения generation, в кэш;
+    // обложка больше всего бюджета или устаревшая (книга изменилась во время чтения) не кэшируется, но возвращается для отправки
+    public Cover put(long bookId, CoverSize size, String hash, String imageHash, byte[] bytes, long generation) {
+        Cover cover = toCover(hash, imageHash, bytes);
+        if (bytes.length > maxBytes) return cover;
+
+        synchronized (this) {
+            if (generation != this.generation) return cover;
+            store(key(bookId, size), cover);
+        }
+        return cover;
+    }
+
+    // изображение спрайта обложек размера size с версией содержимого eTag; null, если его нет в кэше
+    public synchronized Cover getSprite(CoverSize size, String eTag) {
+        return get(spriteKey(size, eTag));
+    }
+
+    // поместить изображение спрайта в кэш (версия содержимого однозначно определяет изображение - проверка изменений не нужна)
+    public Cover putSprite(CoverSize size, String eTag, byte[] bytes) {
+        Cover cover = toCover(eTag, null, bytes);
+        if (bytes.length > maxBytes) return cover;
+
+        synchronized (this) {
+            store(spriteKey(size, eTag), cover);
+        }
+        return cover;
+    }
+
+    private Cover get(String key) {
+        Cover cover = entries.get(key);
+        if (cover == null) misses++;
+        else hits++;
+        return cover;
+    }
+
+    private static Cover toCover(String hash, String imageHash, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return new Cover(hash, imageHash, buffer.asReadOnlyBuffer());
+    }
+
+    private void store(String key, Cover cover) {
+        Cover old = entries.put(key, cover);
+        if (old != null) usedBytes -= old.getLength();
+        usedBytes += cover.getLength();
+
+        Iterator<Cover> lru = entries.values().iterator();
+        while (usedBytes > maxBytes && lru.hasNext()) {
+            usedBytes -= lru.next().getLength();
+            lru.remove();
+            evictions++;
+        }
+    }
+
+    // убрать из кэша все обложки книги (вызывается при изменении или удалении книги и ее уменьшенных копий)
+    public synchronized void invalidate(long bookId) {
+        generation++;
+        remove(key(bookId, null));
+        for (CoverSize size : CoverSize.values()) remove(key(bookId, size));
+    }
+
+    private void remove(String key) {
+        Cover cover = entries.remove(key);
+        if (cover != null) usedBytes -= cover.getLength();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), usedBytes, maxBytes, hits, misses, evictions);
+    }
+
+    private static String key(long bookId, CoverSize size) {
+        return bookId + ":" + (size == null ? "ORIGINAL" : size.name());
+    }
+
+    private static String spriteKey(CoverSize size, String eTag) {
+        return "sprite:" + size.name() + ":" + eTag;
+    }
+
+    // закэшированная обложка: хэш ее содержимого (ETag), хэш исходной обложки (версия в адресе) и сами байты
+    @Getter
+    public static class Cover {
+        private final String hash;
+        private final String imageHash;
+        private final ByteBuffer data;
+
+        Cover(String hash, String imageHash, ByteBuffer data) {
+            this.hash = hash;
+            this.imageHash = imageHash;
+            this.data = data;
+        }
+
+        public int getLength() {
+            return data.limit();
+        }
+
+        // записать обложку в выходной поток (у каждого вызова своя позиция чтения, буфер кэша не меняется)
+        public void writeTo(OutputStream out) throws IOException {
+            Channels.newChannel(out).write(data.duplicate());
+        }
+    }
+
+    // статистика кэша для мониторинга
+    @Getter
+    public static class Stats {
+        private final int entries;
+        private final long usedBytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(int entries, long usedBytes, long maxBytes, long hits, long misses, long evictions) {
+            this.entries = entries;
+            this.usedBytes = usedBytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package library.cache;
+
+import library.model.BookCard;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Кэш результатов списков книг главной страницы (все книги, жанр, поиск, топ) в памяти процесса.
+// Для каждого запроса хранятся id книг страницы и общее количество найденных книг, карточки книг (BookCard) хранятся
+// отдельно, по id, - общие для всех запросов. Каталог меняется редко, поэтому повторный просмотр тех же страниц
+// не обращается к БД.
+// Инвалидация - номером версии каталога: он увеличивается при каждом изменении книг (bump), кэш при этом очищается,
+// а результат запроса, начатого при прежней версии, в кэш не помещается.
+// Количество просмотров книг меняется постоянно и версию не меняет - вместо этого записи живут не дольше
+// library.cache.search.max-age-ms (от него зависят порядок книг по популярности и число просмотров на карточках)
+@Component
+public class SearchResultCache {
+    private final int maxEntries;
+    private final int maxCards;
+    private final long maxAgeMillis;
+
+    // порядок обхода - порядок обращений: первым идет самый давно использованный элемент
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Long, Stamped<BookCard>> cards = new LinkedHashMap<>(256, 0.75f, true);
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SearchResultCache(@Value("${library.cache.search.max-entries:1000}") int maxEntries,
+                             @Value("${library.cache.search.max-cards:10000}") int maxCards,
+                             @Value("${library.cache.search.max-age-ms:60000}") long maxAgeMillis) {
+        this.maxEntries = maxEntries;
+        this.maxCards = maxCards;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    // ключ запроса: тип поиска, локаль, ключевые слова, жанр, позиция (при просмотре по ключу), страница, размер страницы, сортировка
+    @EqualsAndHashCode
+    @Getter
+    public static class Key {
+        private final String type;
+        private final String locale;
+        private final String keywords;
+        private final Long genreId;
+        private final String cursor;
+        private final int page;
+        private final int size;
+        private final String sort;
+
+        public Key(String type, String locale, String keywords, Long genreId, String cursor, int page, int size, String sort) {
+            this.type = type;
+            this.locale = locale;
+            this.keywords = keywords;
+            this.genreId = genreId;
+            this.cursor = cursor;
+            this.page = page;
+            this.size = size;
+            this.sort = sort;
+        }
+    }
+
+    // закэшированный результат: карточки книг страницы (в порядке результата) и общее количество найденных книг
+    @Getter
+    public static class Result {
+        private final List<BookCard> cards;
+        private final long total;
+
+        Result(List<BookCard> cards, long total) {
+            this.cards = cards;
+            this.total = total;
+        }
+    }
+
+    // результат запроса (null, если его нет в кэше, он устарел или карточки каких-то его книг уже вытеснены)
+    public synchronized Result get(Key key) {
+        Entry entry = entries.get(key);
+        List<BookCard> found = entry != null && isFresh(entry.created) ? findCards(entry.ids) : null;
+        if (found == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new Result(found, entry.total);
+    }
+
+    // текущая версия каталога; берется перед выполнением запроса и передается в put
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // поместить в кэш результат запроса, выполненного при версии каталога version
+    // (результат, полученный до изменения каталога, не кэшируется)
+    public synchronized void put(Key key, List<BookCard> found, long total, long version) {
+        if (version != this.version) return;
+        long now = System.currentTimeMillis();
+        List<Long> ids = new ArrayList<>(found.size());
+        for (BookCard card : found) {
+            ids.add(card.getId());
+            cards.put(card.getId(), new Stamped<>(card, now));
+        }
+        entries.put(key, new Entry(ids, total, now));
+
+        Iterator<Entry> lruEntries = entries.values().iterator();
+        while (entries.size() > maxEntries && lruEntries.hasNext()) {
+            lruEntries.next();
+            lruEntries.remove();
+            evictions++;
+        }
+        Iterator<Stamped<BookCard>> lruCards = cards.values().iterator();
+        while (cards.size() > maxCards && lruCards.hasNext()) {
+            lruCards.next();
+            lruCards.remove();
+        }
+    }
+
+    // каталог изменился: все закэшированные результаты устарели (а результаты запросов, выполняющихся сейчас, не попадут в кэш)
+    public synchronized void bump() {
+        version++;
+        entries.clear();
+        cards.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), cards.size(), version, hits, misses, evictions);
+    }
+
+    private boolean isFresh(long created) {
+        return System.currentTimeMillis() - created < maxAgeMillis;
+    }
+
+    // карточки книг ids (null, если какой-то нет)
+    private List<BookCard> findCards(List<Long> ids) {
+        List<BookCard> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Stamped<BookCard> card = cards.get(id);
+            if (card == null || !isFresh(card.created))
+                return null;
+            found.add(card.value);
+        }
+        return Collections.unmodifiableList(found);
+    }
+
+    // id книг страницы, общее количество найденных книг и время получения
+    private static class Entry {
+        final List<Long> ids;
+        final long total;
+        final long created;
+
+        Entry(List<Long> ids, long total, long created) {
+            this.ids = ids;
+            this.total = total;
+            this.created = created;
+        }
+    }
+
+    // значение и время его получения
+    private static class Stamped<T> {
+        final T value;
+        final long created;
+
+        Stamped(T value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    // статистика кэша для мониторинга
+    @Getter
+    public static class Stats {
+        private final int entries;
+        private final int cards;
+        private final long version;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(int entries, int cards, long version, long hits, long misses, long evictions) {
+            this.entries = entries;
+            this.cards = cards;
+            this.version = version;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
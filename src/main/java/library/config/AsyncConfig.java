@@ -0,0 +1,27 @@
+package library.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// настройки фоновых задач (в т.ч. периодических - @Scheduled)
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    // пул потоков фоновой обработки загруженных книг (проверка pdf, подсчет страниц, миниатюры обложек)
+    // пул и очередь ограничены: обработка не должна отнимать у веб-запросов больше нескольких потоков
+    @Bean
+    public ThreadPoolTaskExecutor bookProcessingExecutor(@Value("${library.processing.threads:2}") int threads,
+                                                         @Value("${library.processing.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("book-processing-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);    // незавершенные задачи останутся в book_processing и будут возобновлены
+        return executor;
+    }
+}
@@ -60,6 +60,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
                 // настройка прав доступа к ресурсам (такие-то url будут доступны для таких-то ролей)
                 .authorizeRequests()            // возвращает конфигуратор ограничений доступа
+                    // спрайты обложек доступны всем (проходят через фильтры безопасности, в отличие от web.ignoring())
+                    .antMatchers("/books/img/batch").permitAll()
                     // адреса, доступные только админам и суперадминам
                     .antMatchers("/books/**", "/admin", "/red").hasAnyAuthority("ROLE_ADMIN", "ROLE_SUPERADMIN")
                     // просмотр содержимого книг разрешен только user'ам, admin'ам и superadmin'ам
@@ -1,7 +1,15 @@
 package library.controllers.entites;
 
+import library.cache.CoverCache;
+import library.cache.SearchResultCache;
+import library.domain.BookContentMetaEntity;
 import library.domain.BookEntity;
+import library.domain.CoverSize;
+import library.model.BookFilter;
 import library.model.BookModel;
+import library.model.ByteRange;
+import library.model.CoverSprite;
+import library.search.BookFilterEngine;
 import library.service.AuthorEntityService;
 import library.service.BookEntityService;
 import library.service.GenreEntityService;
@@ -10,13 +18,18 @@ import library.validation.BookModelValidator;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Controller
 public class BookEntityController {
@@ -110,37 +123,169 @@ public class BookEntityController {
     /** Методы для получения отдельных полей книги */
 
     // Предоставляет обложку книги по ее id
+    // size - размер уменьшенной копии обложки (shelf, card, full); без него отдается исходная обложка.
+    // ETag обложки - хэш ее содержимого: браузер, у которого обложка уже есть, получает 304 без тела ответа.
+    // Адрес с параметром v (версия - хэш исходной обложки) никогда не меняет содержимое, поэтому кэшируется браузером бессрочно
     @GetMapping("/books/img")
-    public void getImage(HttpServletResponse response, @RequestParam("id") int id) throws IOException {
-        BookEntity book = bookService.get(id);
+    public void getImage(HttpServletRequest request, HttpServletResponse response, @RequestParam("id") int id,
+                         @RequestParam(value = "size", required = false) String size,
+                         @RequestParam(value = "v", required = false) String version) throws IOException {
+        CoverSize coverSize = CoverSize.parse(size);
+        CoverCache.Cover cover = bookService.getCover(id, coverSize);
+        if (cover == null) return;
+        if (cover.getHash() != null) {
+            // пока уменьшенная копия не изготовлена, вместо нее отдается исходная обложка - ее нельзя кэшировать бессрочно
+            boolean exact = coverSize == null || !cover.getHash().equals(cover.getImageHash());
+            if (exact && version != null && version.equals(cover.getImageHash()))
+                response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            else
+                response.setHeader("Cache-Control", "no-cache");    // можно хранить, но перед использованием нужно сверить ETag
+            if (new ServletWebRequest(request, response).checkNotModified("\"" + cover.getHash() + "\"")) return;
+        }
 
-        byte[] imageBytes = book.getImage();
-        if (imageBytes == null) return;
         response.setContentType("image/jpg");
-        response.setContentLength(imageBytes.length);
+        response.setContentLength(cover.getLength());
         OutputStream os = response.getOutputStream();
-        os.write(imageBytes);
+        cover.writeTo(os);
         os.close();
     }
 
-    // Предоставляет содержание книги (pdf) по ее id
-    @GetMapping("/books/content")
-    public void getContent(HttpServletResponse response, @RequestParam("id") int id) throws IOException {
-        BookEntity book = bookService.get(id);
+    // Предоставляет обложки нескольких книг одним изображением (спрайтом) - одна ячейка size на книгу, в порядке ids.
+    // Страница показывает обложку как фон со смещением, поэтому все обложки страницы загружаются одним запросом.
+    // Кэширование - как у отдельной обложки (ETag от хэшей обложек, адрес с версией v кэшируется бессрочно)
+    @GetMapping("/books/img/batch")
+    public void getImageSprite(HttpServletRequest request, HttpServletResponse response, @RequestParam("ids") List<Long> ids,
+                               @RequestParam(value = "size", required = false) String size,
+                               @RequestParam(value = "v", required = false) String version) throws IOException {
+        if (ids.isEmpty() || ids.size() > CoverSprite.MAX_COVERS) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        CoverSize coverSize = CoverSize.parse(size);
+        CoverSprite sprite = bookService.getCoverSprite(ids, coverSize != null ? coverSize : CoverSize.CARD);
 
-        byte[] contentBytes = book.getContent();
-        if (contentBytes == null) return;
-        response.setContentType("application/pdf");
-        response.setContentLength(contentBytes.length);
+        if (sprite.isExact() && sprite.getVersion().equals(version))
+            response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        else
+            response.setHeader("Cache-Control", "no-cache");    // пустые ячейки заполнятся, когда будут готовы копии обложек
+        if (new ServletWebRequest(request, response).checkNotModified(sprite.getETag())) return;
+
+        CoverCache.Cover image = bookService.getCoverSpriteImage(sprite);
+        response.setContentType("image/jpg");
+        response.setContentLength(image.getLength());
         OutputStream os = response.getOutputStream();
-        os.write(contentBytes);
+        image.writeTo(os);
         os.close();
+    }
+
+    // Статистика кэша обложек (доля попаданий, занятый объем) - для мониторинга
+    @GetMapping("/books/img/stats")
+    @ResponseBody
+    public CoverCache.Stats getImageCacheStats() {
+        return bookService.getCoverCacheStats();
+    }
+
+    // Статистика кэша результатов списков книг главной страницы (доля попаданий, версия каталога) - для мониторинга
+    @GetMapping("/books/search/stats")
+    @ResponseBody
+    public SearchResultCache.Stats getSearchCacheStats() {
+        return bookService.getResultCacheStats();
+    }
+
+    // План выполнения фильтра книг (порядок условий, способ и время каждого шага) - для диагностики
+    //      GET:  /books/search/plan?keywords=толстой&yearFrom=1860&minRating=4
+    @GetMapping("/books/search/plan")
+    @ResponseBody
+    public BookFilterEngine.Plan getFilterPlan(BookFilter filter) {
+        return bookService.explainFilter(filter);
+    }
+
+    // Предоставляет содержание книги (pdf) по ее id
+    // поддерживает запросы части содержания (заголовок Range): pdf-просмотрщики открывают первые страницы, не дожидаясь
+    // загрузки всего файла, а прерванные загрузки продолжаются с места обрыва
+    @GetMapping("/books/content")
+    public void getContent(HttpServletRequest request, HttpServletResponse response, @RequestParam("id") int id) throws IOException {
+        // размер, тип и хэш содержания берутся из метаданных, без чтения самого содержания
+        BookContentMetaEntity meta = bookService.getContentMeta(id);
+        if (meta == null) return;
+        long contentLength = meta.getSize();
+        String contentType = meta.getMimeType();
+        String eTag = "\"" + meta.getSha256() + "\"";
+        response.setHeader("Accept-Ranges", "bytes");
 
-        bookService.updateViewCount(id, book.getViewCount() + 1);
+        // If-None-Match / If-Modified-Since: у клиента уже есть эта версия содержания - отвечаем 304 без тела
+        // (содержание доступно только авторизованным пользователям, поэтому кэшируется только браузером и сверяется каждый раз)
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, meta.getUploadedAt().getTime())) return;
+
+        // If-Range: диапазоны отдаются, только если у клиента та же версия содержания, иначе - содержание целиком
+        String ifRange = request.getHeader("If-Range");
+        List<ByteRange> ranges = ifRange == null || ifRange.equals(eTag)
+                ? ByteRange.parse(request.getHeader("Range"), contentLength)
+                : null;
+
+        // диапазоны не запрошены - отдаем содержание целиком
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(contentLength);
+            sendContent(request, response, id, 0, contentLength);
+
+            bookService.incrementViewCount(id);
+            return;
+        }
+
+        // ни один из запрошенных диапазонов не попадает в содержание
+        if (ranges.isEmpty()) {
+            response.setHeader("Content-Range", "bytes */" + contentLength);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader("Content-Range", range.toContentRange(contentLength));
+            response.setContentLengthLong(range.getLength());
+            sendContent(request, response, id, range.getStart(), range.getLength());
+        } else {
+            OutputStream os = response.getOutputStream();
+            // несколько диапазонов отдаются одним ответом multipart/byteranges
+            String boundary = UUID.randomUUID().toString();
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            for (ByteRange range : ranges) {
+                String partHeader = "\r\n--" + boundary + "\r\n" +
+                        "Content-Type: " + contentType + "\r\n" +
+                        "Content-Range: " + range.toContentRange(contentLength) + "\r\n\r\n";
+                os.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                bookService.writeContent(id, range.getStart(), range.getLength(), os);
+            }
+            os.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            os.close();
+        }
+
+        // просмотр засчитывается один раз - по запросу начала документа
+        if (ranges.get(0).getStart() == 0) bookService.incrementViewCount(id);
     }
 
     /** Вспомогательные методы контроллера */
 
+    // передает клиенту length байт содержания книги, начиная с байта start
+    // если содержание лежит в локальном файле, а контейнер поддерживает sendfile, передачу выполняет ОС (из файла прямо
+    // в сокет), данные не копируются через память приложения; иначе содержание пишется в поток ответа частями
+    private void sendContent(HttpServletRequest request, HttpServletResponse response, long id, long start, long length) throws IOException {
+        Path file = bookService.getContentFile(id);
+        if (file != null && Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", start + length);     // конец не включается
+            return;
+        }
+        OutputStream os = response.getOutputStream();
+        bookService.writeContent(id, start, length, os);
+        os.close();
+    }
+
     // валидирует заполненную форму создания или редактирования книги
     // если данные не валидны, подготавливает RedirectAttributes для перенаправления на повторное заполнение формы
     // возвращает true, если форма была заполнена правильно, false - если неправильно.
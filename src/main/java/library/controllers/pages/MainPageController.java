@@ -2,8 +2,15 @@ package library.controllers.pages;
 
 import library.controllers.security.UserController;
 import library.domain.BookEntity;
+import library.model.BookCard;
+import library.model.BookFilter;
+import library.model.CoverSprite;
+import library.model.KeysetPage;
+import library.search.AutocompleteIndex;
+import library.search.FacetIndex;
 import library.service.AuthorEntityService;
 import library.service.BookEntityService;
+import library.service.BookProcessingEntityService;
 import library.service.GenreEntityService;
 import library.service.PublisherEntityService;
 import org.springframework.context.MessageSource;
@@ -17,10 +24,13 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.stream.Collectors;
 
 
 /** Контроллер, отвечающий за отображение главной страницы */
@@ -32,11 +42,12 @@ public class MainPageController {
     BookEntityService bookService;
     GenreEntityService genreService;
     PublisherEntityService publisherService;
+    BookProcessingEntityService processingService;
     UserController userController;
 
     /** Состояние библиотеки */
-    List<BookEntity> topBooks;      // топ книг (отображается на полке)
-    Page<BookEntity> pageBooks;     // страница книг, которую нужно отобразить
+    List<BookCard> topBooks;        // топ книг (отображается на полке)
+    KeysetPage pageBooks;           // страница книг, которую нужно отобразить
     static int pageNumber;          // номер текущей страницы (начиная с 1)
     static int pageSize;            // кол-во книг на одной странице
     static int maxPageNumber;       // сколько всего страниц
@@ -45,16 +56,23 @@ public class MainPageController {
     SearchType searchType;          // тип используемого поиска
     long genreId;                   // id жанра (для поиска по жанру)
     String[] keywords;              // ключевые слова поиска (для поиска по keywords)
+    BookFilter filter;              // условия фильтра (для поиска по фильтру)
+    // страница списка всех книг и книг жанра задается не номером, а позицией в списке (просмотр по ключу, без OFFSET):
+    // первая, последняя, следующая после seekCursor или предшествующая ему
+    KeysetPage.Seek seek = KeysetPage.Seek.FIRST;
+    String seekCursor;
 
     MessageSource messageSource;
 
     public MainPageController(AuthorEntityService authorService, BookEntityService bookService,
                               GenreEntityService genreService, PublisherEntityService publisherService,
+                              BookProcessingEntityService processingService,
                               UserController userController, ResourceBundleMessageSource messageSource) {
         this.authorService = authorService;
         this.bookService = bookService;
         this.genreService = genreService;
         this.publisherService = publisherService;
+        this.processingService = processingService;
         this.userController = userController;
 
         this.messageSource = messageSource;
@@ -76,23 +94,45 @@ public class MainPageController {
         model.addAttribute("top", topBooks);                            // Содержимое топовой полки
         model.addAttribute("allGenres", genreService.getAll());         // Содержимое меню жанров
         model.addAttribute("pageBooks", pageBooks);                     // Содержимое библиотеки (текущая страница)
+        model.addAttribute("processing", processingService.getUnfinishedStatuses(     // Незавершенная обработка книг страницы
+                pageBooks.getContent().stream().map(BookCard::getId).collect(Collectors.toList())));
+        // обложки полки и страницы загружаются двумя спрайтами (id книг и версия их обложек для адреса спрайта)
+        model.addAttribute("topCoverIds", coverIds(topBooks));
+        model.addAttribute("topCoverVersion", coverVersion(topBooks));
+        model.addAttribute("pageCoverIds", coverIds(pageBooks.getContent()));
+        model.addAttribute("pageCoverVersion", coverVersion(pageBooks.getContent()));
         model.addAttribute("maxPage", MainPageController.maxPageNumber);
         model.addAttribute("thisPage", MainPageController.pageNumber);
         model.addAttribute("pageSize", MainPageController.pageSize);
         model.addAttribute("totalElements", MainPageController.totalElements);
         model.addAttribute("SearchMessage", getSearchMessage());
-        model.addAttribute("genreId", searchType == SearchType.SEARCH_GENRE ? genreId : -1);
+        model.addAttribute("didYouMean", searchType == SearchType.SEARCH_KEYWORDS ? bookService.suggestSearch(keywords) : null);
+        model.addAttribute("genreId", searchType == SearchType.SEARCH_GENRE ? genreId
+                : searchType == SearchType.FILTER && filter.getGenreId() != null ? filter.getGenreId() : -1);
+        model.addAttribute("filter", searchType == SearchType.FILTER ? filter : new BookFilter());
+        model.addAttribute("facets", getFacets());      // количество найденных книг по жанрам, издательствам, годам, рейтингу
         model.addAttribute("userController", userController);
 
         return "pages/main";
     }
 
+    // id книг через запятую (для адреса спрайта обложек)
+    static String coverIds(List<BookCard> books) {
+        return books.stream().map(book -> String.valueOf(book.getId())).collect(Collectors.joining(","));
+    }
+
+    // версия спрайта обложек книг (меняется при замене любой из обложек)
+    static String coverVersion(List<BookCard> books) {
+        return CoverSprite.version(books.stream().map(BookCard::getImageHash).collect(Collectors.toList()));
+    }
+
     // слушает запросы на поиск книг (и меняет параметры поиска согласно полученному запросу)
     @GetMapping("/search")
     public String changeSearch(@RequestParam("type") String type,
                                @RequestParam(value = "keywords", required = false) String keywords,
                                @RequestParam(value = "genreId", required = false) Integer genreId) {
         pageNumber = 1;
+        seekFirstPage();
         switch (type) {
             case ("all"):
                 searchType = SearchType.ALL;
@@ -110,22 +150,94 @@ public class MainPageController {
         return "redirect:/main_page";
     }
 
+    // фильтр книг: заменяет текущие критерии поиска    GET:  /main_page/filter?genreId=3&yearFrom=1990&minRating=4
+    @GetMapping("/filter")
+    public String changeFilter(BookFilter filter) {
+        applyFilter(filter);
+        return "redirect:/main_page";
+    }
+
+    // уточнение текущего поиска: заданные условия добавляются к текущим критериям   GET:  /main_page/filter/refine?publisherId=2
+    @GetMapping("/filter/refine")
+    public String refineFilter(BookFilter refinement) {
+        applyFilter(currentFilter().merge(refinement));
+        return "redirect:/main_page";
+    }
+
+    // текущие критерии поиска в виде фильтра
+    private BookFilter currentFilter() {
+        BookFilter current = new BookFilter();
+        switch (searchType) {
+            case SEARCH_GENRE:
+                current.setGenreId(genreId);
+                break;
+            case SEARCH_KEYWORDS:
+                current.setKeywords(String.join(" ", keywords));
+                break;
+            case FILTER:
+                current = filter;
+                break;
+            default:
+                ;
+        }
+        return current;
+    }
+
+    private void applyFilter(BookFilter filter) {
+        pageNumber = 1;
+        seekFirstPage();
+        if (filter.isEmpty()) {
+            searchType = SearchType.ALL;
+        } else {
+            searchType = SearchType.FILTER;
+            this.filter = filter;
+        }
+    }
+
+    // подсказки для строки поиска (JSON)    GET:  /main_page/autocomplete?q=тол&limit=8
+    @GetMapping("/autocomplete")
+    @ResponseBody
+    public List<AutocompleteIndex.Suggestion> autocomplete(@RequestParam("q") String prefix,
+                                                           @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        return bookService.autocomplete(prefix, limit);
+    }
+
     // выполняет поиск книг согласно текущим параметрам поиска, записывает результат в this.pageBooks
     public void search () {
         int pageNum = pageNumber - 1;    // контроллер страницы считает с 1, а Pageable с 0
         switch (searchType) {
             case ALL:
-                pageBooks = bookService.getAll(pageNum, pageSize, "viewCount", Sort.Direction.ASC);
+                pageBooks = bookService.getCards(seek, seekCursor, pageSize, Sort.Direction.ASC);
                 break;
             case SEARCH_GENRE:
-                pageBooks = bookService.findByGenre(pageNum, pageSize, "viewCount", Sort.Direction.DESC, genreId);
+                pageBooks = bookService.findByGenre(seek, seekCursor, pageSize, Sort.Direction.DESC, genreId);
                 break;
             case SEARCH_KEYWORDS:
-                pageBooks = bookService.search(pageNum, pageSize, "viewCount", Sort.Direction.DESC, keywords);
+                // результаты поиска упорядочены по релевантности и нумеруются страницами (поиск выполняется в памяти)
+                Page<BookCard> found = bookService.searchCards(pageNum, pageSize, "viewCount", Sort.Direction.DESC, keywords);
+                pageBooks = new KeysetPage(found.getContent(), found.getTotalElements());
+                break;
+            case FILTER:
+                Page<BookCard> filtered = bookService.filterCards(filter, pageNum, pageSize);
+                pageBooks = new KeysetPage(filtered.getContent(), filtered.getTotalElements());
                 break;
         }
-        maxPageNumber = pageBooks.getTotalPages();
-        totalElements = pageBooks.getTotalElements();
+        maxPageNumber = pageBooks.getTotalPages(pageSize);
+        totalElements = pageBooks.getTotal();
+    }
+
+    // фасеты текущего поиска (по жанрам считаются без учета выбранного жанра - для меню жанров)
+    public FacetIndex.Facets getFacets() {
+        switch (searchType) {
+            case SEARCH_GENRE:
+                return bookService.getFacets(genreId);
+            case SEARCH_KEYWORDS:
+                return bookService.getFacets(null, keywords);
+            case FILTER:
+                return bookService.getFilterFacets(filter);
+            default:
+                return bookService.getFacets((Long) null);
+        }
     }
 
     // формирует сообщение о критериях, по которым был выполнен поиск, показываемое пользователю
@@ -136,6 +248,7 @@ public class MainPageController {
         String found = messageSource.getMessage("found", null, locale);
         String genre = messageSource.getMessage("genre", null, locale);
         String search = messageSource.getMessage("search", null, locale);
+        String filterLabel = messageSource.getMessage("filter", null, locale);
 
         // составление локализованного сообщения о критериях поиска
         String message;
@@ -153,12 +266,35 @@ public class MainPageController {
                 }
                 message += String.format(" (%s: %s)", search, mess.toString().trim());
                 break;
+            case FILTER:
+                message += String.format(" (%s: %s)", filterLabel, describeFilter(locale));
+                break;
             default:
                 ;
         }
         return message;
     }
 
+    // условия текущего фильтра через запятую (вспомогательный метод)
+    private String describeFilter(Locale locale) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.hasKeywords()) conditions.add("'" + filter.getKeywords().trim() + "'");
+        if (filter.getGenreId() != null) conditions.add(genreService.get(filter.getGenreId()).getLocalizedName());
+        if (filter.getAuthorId() != null) conditions.add(authorService.get(filter.getAuthorId()).getLocalizedFio());
+        if (filter.getPublisherId() != null) conditions.add(publisherService.get(filter.getPublisherId()).getLocalizedName());
+        if (filter.getYearFrom() != null || filter.getYearTo() != null)
+            conditions.add(range(messageSource.getMessage("filter.years", null, locale), filter.getYearFrom(), filter.getYearTo()));
+        if (filter.getMinRating() != null)
+            conditions.add(messageSource.getMessage("filter.minRating", null, locale) + " " + filter.getMinRating());
+        if (filter.getPagesFrom() != null || filter.getPagesTo() != null)
+            conditions.add(range(messageSource.getMessage("filter.pages", null, locale), filter.getPagesFrom(), filter.getPagesTo()));
+        return String.join(", ", conditions);
+    }
+
+    private static String range(String label, Integer from, Integer to) {
+        return label + " " + (from == null ? "" : from) + "–" + (to == null ? "" : to);
+    }
+
     // возвращает число найденных книг с правильным склонением слова 'книга' (вспомогательный метод)
     public String getCorrectDeclension(long digit) {
         Locale locale = LocaleContextHolder.getLocale();
@@ -187,27 +323,48 @@ public class MainPageController {
             switch (title) {
                 case "<<":
                     MainPageController.pageNumber = 1;
+                    seekFirstPage();
                     break;
                 case "<":
-                    if (MainPageController.pageNumber > 1) MainPageController.pageNumber--;
+                    if (MainPageController.pageNumber > 1) {
+                        MainPageController.pageNumber--;
+                        seek(KeysetPage.Seek.BEFORE, pageBooks == null ? null : pageBooks.getFirstCursor());
+                    }
                     break;
                 case ">":
-                    MainPageController.pageNumber++;
+                    if (MainPageController.pageNumber < MainPageController.maxPageNumber) {
+                        MainPageController.pageNumber++;
+                        seek(KeysetPage.Seek.AFTER, pageBooks == null ? null : pageBooks.getLastCursor());
+                    }
                     break;
                 case ">>":
-                    MainPageController.pageNumber = MainPageController.maxPageNumber;
+                    MainPageController.pageNumber = Math.max(1, MainPageController.maxPageNumber);
+                    seek(KeysetPage.Seek.LAST, null);
                     break;
             }
         }
 
+        // при смене размера страницы просмотр начинается с первой страницы
         if (button.equals("PageSize")) {
             pageSize = size;
+            MainPageController.pageNumber = 1;
+            seekFirstPage();
         }
 
         return "redirect:/main_page";
     }
 
 
+    private void seek(KeysetPage.Seek seek, String cursor) {
+        this.seek = seek;
+        this.seekCursor = cursor;
+    }
+
+    private void seekFirstPage() {
+        seek(KeysetPage.Seek.FIRST, null);
+    }
+
+
     // Рейтинг                  GET:  /main_page/rating?bookId=15&rating=4
     @GetMapping("/rating")
     public String registerVoice(@RequestParam("bookId") long bookId, @RequestParam("rating") int rating, RedirectAttributes redirectAttr, Locale loc) {
@@ -240,8 +397,8 @@ public class MainPageController {
     // Принимает запрос на показ содержания книги
     @GetMapping("/viewing/{id}")
     public String getContent(@PathVariable("id") int id) {
-        byte[] content = bookService.get(id).getContent();
-        if (content != null && content.length > 0) {
+        // наличие содержания проверяется по его метаданным, само содержание не читается
+        if (bookService.getContentMeta(id) != null) {
             return "redirect:/books/content?id=" + id;
         } else {
             return "redirect:/errors?name=pdf_not_found";
@@ -255,5 +412,6 @@ public class MainPageController {
 enum SearchType {
     ALL,                // найти все книги
     SEARCH_GENRE,       // найти книги определенного жанра
-    SEARCH_KEYWORDS;    // найти книги по ключевым словам (первое слово ищется в названии книги, остальные, если они есть, - в ФИО автора)
+    SEARCH_KEYWORDS,    // найти книги по ключевым словам (по индексу в памяти: название, автор, издательство, жанр)
+    FILTER;             // найти книги по сочетанию условий фильтра (ключевые слова, жанр, автор, издательство, год, рейтинг, страницы)
 }
\ No newline at end of file
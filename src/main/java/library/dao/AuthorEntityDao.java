@@ -3,4 +3,5 @@ package library.dao;
 import library.domain.AuthorEntity;
 
 public interface AuthorEntityDao extends GeneralDao<AuthorEntity> {
+    AuthorEntity findByFio(String fio);     // автор по точному фио (null, если не найден)
 }
@@ -0,0 +1,10 @@
+package library.dao;
+
+import org.springframework.core.io.InputStreamSource;
+
+public interface BlobRefEntityDao {
+    String store(InputStreamSource source);     // сохранить данные в хранилище и добавить ссылку на них, возвращает хэш
+    void acquire(String hash);                  // добавить ссылку на объект хранилища
+    void release(String hash);                  // убрать ссылку на объект (объект без ссылок удаляется из хранилища)
+    int getRefCount(String hash);               // количество ссылок на объект
+}
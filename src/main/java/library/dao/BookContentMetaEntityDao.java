@@ -0,0 +1,9 @@
+package library.dao;
+
+import library.domain.BookContentMetaEntity;
+
+public interface BookContentMetaEntityDao {
+    BookContentMetaEntity get(long bookId);                         // получить метаданные содержания книги (null, если содержания нет)
+    BookContentMetaEntity update(long bookId, String sha256, int pageCount);    // обновить метаданные по содержанию книги в хранилище
+    void delete(long bookId);                                       // удалить метаданные содержания книги
+}
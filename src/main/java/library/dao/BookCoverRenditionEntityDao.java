@@ -0,0 +1,14 @@
+package library.dao;
+
+import library.domain.BookCoverRenditionEntity;
+import library.domain.CoverSize;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface BookCoverRenditionEntityDao {
+    BookCoverRenditionEntity get(long bookId, CoverSize size);          // уменьшенная копия обложки (null, если ее нет)
+    Map<Long, String> getHashes(Collection<Long> bookIds, CoverSize size);   // хэши уменьшенных копий обложек книг (по id книги)
+    void save(long bookId, CoverSize size, byte[] image, int width, int height);   // сохранить (заменить) уменьшенную копию обложки
+    void deleteAll(long bookId);                                        // удалить все уменьшенные копии обложки книги
+}
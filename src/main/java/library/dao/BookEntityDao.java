@@ -1,19 +1,115 @@
 package library.dao;
 
+import library.cache.CoverCache;
+import library.domain.BookContentMetaEntity;
+import library.domain.BookCoverRenditionEntity;
 import library.domain.BookEntity;
+import library.domain.CoverSize;
+import library.model.BookCard;
+import library.model.BookFilter;
+import library.model.CoverSprite;
+import library.model.KeysetPage;
+import library.search.AutocompleteIndex;
+import library.search.BookFilterEngine;
+import library.search.FacetIndex;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface BookEntityDao extends GeneralDao<BookEntity> {
-    List<BookEntity> findTopBooks(int limit);
+    // карточки топовых книг (по количеству просмотров)
+    List<BookCard> findTopBooks(int limit);
+
+    // страница карточек всех книг
+    Page<BookCard> getCards(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection);
+
+    // страница карточек всех книг при просмотре по ключу (viewCount, id): первая, последняя или соседняя с позицией cursor
+    // (позиции - KeysetPage.getFirstCursor/getLastCursor предыдущей страницы)
+    KeysetPage getCards(KeysetPage.Seek seek, String cursor, int pageSize, Sort.Direction sortDirection);
+
+    // страница карточек книг жанра при просмотре по ключу (viewCount, id)
+    KeysetPage findByGenre(KeysetPage.Seek seek, String cursor, int pageSize, Sort.Direction sortDirection, long genreId);
+
+    // страница карточек книг, найденных по названию и/или фио автора
+    Page<BookCard> searchCards(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString);
+
     byte[] getContent(long id);
-    Page<BookEntity> findByGenre(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, long genreId);
+
+    // обложка книги
+    byte[] getImage(long id);
+
+    // книга, у которой заполнены только id, image и imageHash (null, если книги нет) - для отправки обложки
+    BookEntity findCover(long id);
+
+    // обложка указанного размера (исходная обложка, если size == null или уменьшенная копия еще не изготовлена)
+    byte[] getImage(long id, CoverSize size);
+
+    // обложка указанного размера вместе с ее хэшем (исходная обложка, если size == null или уменьшенная копия еще не изготовлена);
+    // null, если обложки нет
+    CoverCache.Cover getCover(long id, CoverSize size);
+
+    // спрайт обложек указанного размера для книг ids (в порядке ids); сами обложки не читаются
+    CoverSprite getCoverSprite(List<Long> ids, CoverSize size);
+
+    // изображение спрайта обложек (jpeg)
+    CoverCache.Cover getCoverSpriteImage(CoverSprite sprite) throws IOException;
+
+    // уменьшенная копия обложки (null, если она еще не изготовлена)
+    BookCoverRenditionEntity getCoverRendition(long id, CoverSize size);
+
+    // ссылка (хэш) на обложку книги в хранилище объектов (null, если обложка в хранилище не перенесена)
+    String getImageHash(long id);
+
+    // ссылка (хэш) на содержание книги в хранилище объектов (null, если содержание в хранилище не перенесено)
+    String getContentHash(long id);
+
+    // файл содержания книги в локальной файловой системе (null, если его нет) - позволяет отдавать его через sendfile
+    Path getContentFile(long id);
+
+    // метаданные содержания книги (null, если содержания нет) - не требуют чтения самого содержания
+    BookContentMetaEntity getContentMeta(long id);
+
+    // размер содержания книги в байтах (null, если содержания нет)
+    Long getContentLength(long id);
+
+    // передать содержание книги в выходной поток частями, не загружая его в память целиком
+    void writeContent(long id, OutputStream out) throws IOException;
+
+    // передать в выходной поток length байт содержания книги, начиная с байта offset (нумерация с 0)
+    void writeContent(long id, long offset, long length, OutputStream out) throws IOException;
+
+    // исправленный поисковый запрос, если в нем есть слова с опечатками ("возможно, вы имели в виду"); иначе null
+    String suggestSearch(String... searchString);
+
+    // количество найденных книг по жанрам, издательствам, десятилетиям издания и рейтингу: книги, найденные по ключевым
+    // словам (весь каталог, если их нет), жанра genreId (null - любого); null, если индексы еще не построены
+    FacetIndex.Facets getFacets(Long genreId, String... keywords);
+
+    // страница карточек книг, подходящих под все условия фильтра; пустая, если индексы еще не построены
+    Page<BookCard> filterCards(BookFilter filter, int pageNumber, int pageSize);
+
+    // количество книг, подходящих под фильтр (null - без условий), по значениям фасетов; null, если индексы еще не построены
+    FacetIndex.Facets getFilterFacets(BookFilter filter);
+
+    // план выполнения фильтра (порядок условий, способ выполнения и время каждого шага) - для диагностики
+    BookFilterEngine.Plan explainFilter(BookFilter filter);
+
+    // подсказки при вводе поискового запроса: названия книг, авторы и издательства, начинающиеся с prefix, по популярности
+    List<AutocompleteIndex.Suggestion> autocomplete(String prefix, int limit);
+
+    // страница карточек книг жанра
+    Page<BookCard> findByGenre(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, long genreId);
 
     // обновить количество посмотров книги
     void updateViewCount(long id, long viewCount);
 
+    // увеличить количество просмотров книги на 1
+    void incrementViewCount(long id);
+
     // обновить данные рейтинга
     void updateRating(long id, long totalRating, long totalViewCount, int avgRating);
 
@@ -0,0 +1,16 @@
+package library.dao;
+
+import library.domain.BookProcessingEntity;
+import library.domain.ProcessingStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface BookProcessingEntityDao {
+    BookProcessingEntity get(long bookId);                                      // состояние обработки книги (null, если книга не обрабатывалась)
+    void setStatus(long bookId, ProcessingStatus status, String message);       // установить состояние обработки книги
+    List<Long> findPending(int limit);                                          // id первых limit книг, ожидающих обработки
+    int resetInterrupted();                                                     // вернуть в очередь книги, обработка которых прервана
+    Map<Long, ProcessingStatus> getUnfinishedStatuses(Collection<Long> bookIds); // состояния незавершенной обработки указанных книг
+}
@@ -4,6 +4,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * DAO - абстрактный слой по работе с бизнес-процессами. Определяет какое поведение будет у каждого типа объектов и
@@ -21,4 +23,16 @@ public interface GeneralDao<T> {
     List<T> getAll(Sort sort);
     Page<T> getAll(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection);
     Page<T> search(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String ... searchString);
+
+    // поиск по началу строки (по индексу), а если так ничего не найдено - по вхождению в любом месте (без индекса)
+    static <T> List<T> prefixOrContaining(Supplier<List<T>> byPrefix, Supplier<List<T>> byContaining) {
+        List<T> found = byPrefix.get();
+        return found.isEmpty() ? byContaining.get() : found;
+    }
+
+    // то же постранично: какой поиск выполнять, решает проверка наличия совпадений по началу (LIMIT 1 по индексу),
+    // поэтому выполняется только один постраничный запрос (со своим подсчетом), а не оба
+    static <T> Page<T> prefixOrContaining(BooleanSupplier prefixExists, Supplier<Page<T>> byPrefix, Supplier<Page<T>> byContaining) {
+        return prefixExists.getAsBoolean() ? byPrefix.get() : byContaining.get();
+    }
 }
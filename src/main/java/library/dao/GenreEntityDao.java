@@ -3,4 +3,5 @@ package library.dao;
 import library.domain.GenreEntity;
 
 public interface GenreEntityDao extends GeneralDao<GenreEntity> {
+    GenreEntity findByName(String name);     // жанр по точному названию (null, если не найден)
 }
@@ -3,4 +3,5 @@ package library.dao;
 import library.domain.PublisherEntity;
 
 public interface PublisherEntityDao extends GeneralDao<PublisherEntity> {
+    PublisherEntity findByName(String name);     // издательство по точному названию (null, если не найден)
 }
@@ -1,5 +1,6 @@
 package library.domain;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,6 +16,7 @@ import java.util.Locale;
 
 
 @Entity
+@EntityListeners(SearchColumnsListener.class)
 @Table(name = "author")
 @EqualsAndHashCode(of = "id")
 @Getter @Setter
@@ -32,6 +34,17 @@ public class AuthorEntity {
     @Column(name = "en_fio", nullable = false)
     private String enFio;
 
+    // нормализованные фио (SearchNormalizer) для поиска по их началу по индексу; заполняются при сохранении (SearchColumnsListener)
+    @Column(name = "search_ru_fio")
+    @Setter(AccessLevel.NONE)
+    @SearchColumn("ruFio")
+    private String searchRuFio;
+
+    @Column(name = "search_en_fio")
+    @Setter(AccessLevel.NONE)
+    @SearchColumn("enFio")
+    private String searchEnFio;
+
     private Date birthday;
 
     @OneToMany(mappedBy = "author", fetch=FetchType.LAZY) // author - имя поля в классе Book
@@ -0,0 +1,25 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+// счетчик ссылок (из книг) на объект хранилища
+@Entity
+@Table(name = "blob_ref")
+@EqualsAndHashCode(of = "hash")
+@Getter @Setter
+public class BlobRefEntity {
+    @Id
+    private String hash;
+
+    @Column(name = "ref_count")
+    private int refCount;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+}
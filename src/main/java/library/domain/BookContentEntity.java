@@ -0,0 +1,21 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+// содержание книги (pdf), еще не перенесенное в хранилище объектов; хранится отдельно от таблицы book
+@Entity
+@Table(name = "book_content")
+@EqualsAndHashCode(of = "bookId")
+@Getter @Setter
+public class BookContentEntity {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Lob
+    private byte[] content;
+}
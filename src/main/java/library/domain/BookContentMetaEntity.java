@@ -0,0 +1,37 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+import java.util.Date;
+
+// метаданные содержания книги (pdf), хранятся отдельно от самого содержания
+@Entity
+@Table(name = "book_content_meta")
+@EqualsAndHashCode(of = "bookId")
+@Getter @Setter
+@DynamicUpdate
+@DynamicInsert
+public class BookContentMetaEntity {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    private long size;              // размер содержания в байтах
+
+    private String sha256;          // хэш содержания (hex)
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "page_count")
+    private int pageCount;
+
+    @Column(name = "uploaded_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date uploadedAt;
+}
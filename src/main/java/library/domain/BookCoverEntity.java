@@ -0,0 +1,21 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+// обложка книги, еще не перенесенная в хранилище объектов; хранится отдельно от таблицы book
+@Entity
+@Table(name = "book_cover")
+@EqualsAndHashCode(of = "bookId")
+@Getter @Setter
+public class BookCoverEntity {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Lob
+    private byte[] image;
+}
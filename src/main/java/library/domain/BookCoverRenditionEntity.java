@@ -0,0 +1,34 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+
+// уменьшенная копия обложки книги, хранящаяся в хранилище объектов
+@Entity
+@Table(name = "book_cover_rendition")
+@EqualsAndHashCode(of = "id")
+@Getter @Setter
+@DynamicUpdate
+@DynamicInsert
+public class BookCoverRenditionEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    private CoverSize size;
+
+    private String hash;
+
+    private int width;
+
+    private int height;
+}
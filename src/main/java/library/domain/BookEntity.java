@@ -1,18 +1,21 @@
 package library.domain;
 
 import library.model.BookModel;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.DynamicInsert;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.SelectBeforeUpdate;
+import org.springframework.core.io.InputStreamSource;
 
 import javax.persistence.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 
 @Entity
+@EntityListeners(SearchColumnsListener.class)
 @Table(name = "book")
 @EqualsAndHashCode(of = "id")
 @Getter @Setter
@@ -24,28 +27,10 @@ public class BookEntity {
     public BookEntity() {
     }
 
-    public BookEntity(Long id, byte[] image) {
+    public BookEntity(Long id, byte[] image, String imageHash) {
         this.id = id;
         this.image = image;
-    }
-
-    // все поля, кроме content
-    public BookEntity(Long id, String name, int pageCount, String isbn, GenreEntity genre, AuthorEntity author, PublisherEntity publisher,
-                      int publishYear, byte[] image, int avgRating, long totalVoteCount, long totalRating, long viewCount, String description) {
-        this.id = id;
-        this.name = name;
-        this.pageCount = pageCount;
-        this.isbn = isbn;
-        this.genre = genre;
-        this.author = author;
-        this.publisher = publisher;
-        this.publishYear = publishYear;
-        this.image = image;
-        this.avgRating = avgRating;
-        this.totalVoteCount = totalVoteCount;
-        this.totalRating = totalRating;
-        this.viewCount = viewCount;
-        this.description = description;
+        this.imageHash = imageHash;
     }
 
     public BookModel toBookModel() {
@@ -60,6 +45,7 @@ public class BookEntity {
         model.setPublisher(publisher.getLocalizedName());
         model.setPublishYear(String.valueOf(publishYear));
         model.setImage(image);
+        model.setImageHash(imageHash);
         model.setAvgRating(avgRating);
         model.setTotalVoteCount(totalVoteCount);
         model.setTotalRating(totalRating);
@@ -76,9 +62,20 @@ public class BookEntity {
     @NotEmpty
     private String name;
 
-    @Lob    // означает, что аннотированное поле должно быть представлено как BLOB (двоичные данные) в DataBase.
+    // нормализованное название (SearchNormalizer) для поиска по его началу по индексу; заполняется при сохранении (SearchColumnsListener)
+    @Column(name = "search_name")
+    @Setter(AccessLevel.NONE)
+    @SearchColumn("name")
+    private String searchName;
+
+    // содержание, загруженное массивом байт (или прочитанное из book_content); в таблице book не хранится -
+    // при сохранении книги переносится в хранилище объектов
+    @Transient
     private byte[] content;
 
+    @Column(name = "content_hash")      // ссылка (sha256) на содержание в хранилище объектов
+    private String contentHash;
+
     @Column(name = "page_count")
     @Min(value = 1, message = "В книге должна быть хотя бы одна страница!")
     private int pageCount;
@@ -100,9 +97,13 @@ public class BookEntity {
     @Column(name = "publish_year")
     private int publishYear;
 
-    @Lob()
+    // обложка, загруженная массивом байт (или прочитанная из book_cover); в таблице book не хранится
+    @Transient
     private byte[] image;
 
+    @Column(name = "image_hash")        // ссылка (sha256) на обложку в хранилище объектов
+    private String imageHash;
+
     @Column(name = "avg_rating")
     private int avgRating;
 
@@ -118,6 +119,14 @@ public class BookEntity {
     @Column(name = "descr")
     private String description;
 
+    // источники загруженных файлов (например, MultipartFile, сохраненный контейнером во временный файл);
+    // при сохранении книги их данные потоком переносятся в хранилище, не загружаясь в память целиком
+    @Transient
+    private InputStreamSource contentSource;
+
+    @Transient
+    private InputStreamSource imageSource;
+
     @Override
     public String toString() {
         return name;
@@ -0,0 +1,31 @@
+package library.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "book_processing")
+@EqualsAndHashCode(of = "bookId")
+@Getter @Setter
+@DynamicUpdate
+@DynamicInsert
+public class BookProcessingEntity {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    private ProcessingStatus status;
+
+    private String message;         // причина ошибки обработки
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
@@ -0,0 +1,28 @@
+package library.domain;
+
+import lombok.Getter;
+
+// размеры уменьшенных копий обложки (обложка вписывается в прямоугольник width x height с сохранением пропорций)
+@Getter
+public enum CoverSize {
+    SHELF(160, 240),    // полка топовых книг
+    CARD(240, 360),     // карточка книги в библиотеке
+    FULL(800, 1200);    // просмотр обложки (окно редактирования книги); ограничивает размер многомегабайтных сканов
+
+    private final int width;
+    private final int height;
+
+    CoverSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // размер по его имени из параметра запроса (null, если имя не задано или неизвестно)
+    public static CoverSize parse(String name) {
+        if (name == null) return null;
+        for (CoverSize size : values()) {
+            if (size.name().equalsIgnoreCase(name)) return size;
+        }
+        return null;
+    }
+}
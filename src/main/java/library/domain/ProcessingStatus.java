@@ -0,0 +1,9 @@
+package library.domain;
+
+// состояние фоновой обработки книги после загрузки
+public enum ProcessingStatus {
+    PENDING,        // книга сохранена, обработка ожидает в очереди
+    PROCESSING,     // обработка выполняется
+    DONE,           // обработка завершена
+    FAILED;         // обработка завершилась ошибкой (причина - в message)
+}
@@ -1,5 +1,6 @@
 package library.domain;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,6 +14,7 @@ import java.util.List;
 import java.util.Locale;
 
 @Entity
+@EntityListeners(SearchColumnsListener.class)
 @Table(name = "publisher")
 @EqualsAndHashCode(of = "id")
 @Getter @Setter
@@ -30,6 +32,17 @@ public class PublisherEntity {
     @Column(name = "en_name", nullable = false)
     private String enName;
 
+    // нормализованные названия (SearchNormalizer) для поиска по их началу по индексу; заполняются при сохранении (SearchColumnsListener)
+    @Column(name = "search_ru_name")
+    @Setter(AccessLevel.NONE)
+    @SearchColumn("ruName")
+    private String searchRuName;
+
+    @Column(name = "search_en_name")
+    @Setter(AccessLevel.NONE)
+    @SearchColumn("enName")
+    private String searchEnName;
+
     @OneToMany(mappedBy = "publisher", fetch = FetchType.LAZY)  // publisher - имя поля в классе Book
     private List<BookEntity> books;
 
@@ -0,0 +1,14 @@
+package library.domain;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Нормализованная (SearchNormalizer) копия строкового поля сущности value для поиска по индексу;
+// заполняется при сохранении сущности (SearchColumnsListener)
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface SearchColumn {
+    String value();
+}
@@ -0,0 +1,46 @@
+package library.domain;
+
+import library.search.SearchNormalizer;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Заполняет поля сущности, отмеченные @SearchColumn, перед ее сохранением: нормализованным значением исходного поля.
+// Подключается к сущности аннотацией @EntityListeners(SearchColumnsListener.class)
+public class SearchColumnsListener {
+    // поля поиска класса сущности и их исходные поля: [поле поиска, исходное поле] (определяются один раз на класс)
+    private static final Map<Class<?>, List<Field[]>> COLUMNS = new ConcurrentHashMap<>();
+
+    @PrePersist
+    @PreUpdate
+    public void updateSearchColumns(Object entity) {
+        try {
+            for (Field[] column : COLUMNS.computeIfAbsent(entity.getClass(), SearchColumnsListener::columns))
+                column[0].set(entity, SearchNormalizer.normalize((String) column[1].get(entity)));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Field[]> columns(Class<?> type) {
+        List<Field[]> columns = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            SearchColumn column = field.getAnnotation(SearchColumn.class);
+            if (column == null) continue;
+            try {
+                Field source = type.getDeclaredField(column.value());
+                field.setAccessible(true);
+                source.setAccessible(true);
+                columns.add(new Field[]{field, source});
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException("No field " + column.value() + " for search column " + type.getName() + "." + field.getName(), e);
+            }
+        }
+        return columns;
+    }
+}
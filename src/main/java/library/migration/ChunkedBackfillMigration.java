@@ -0,0 +1,206 @@
+package library.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Базовый класс Java-миграций Flyway, переносящих данные большой таблицы без длительной блокировки.
+ * Вместо одного ALTER TABLE / INSERT ... SELECT по всей таблице строки обрабатываются порциями по диапазонам id,
+ * каждая порция - в своей короткой транзакции (при необходимости между порциями выдерживается пауза, см. ниже).
+ * После каждой порции в таблице backfill_checkpoint сохраняется последний обработанный id: если перенос прерван
+ * (остановка приложения, ошибка), после flyway repair он продолжается с этого места, а не начинается заново.
+ *
+ * Миграции Flyway выполняются при запуске приложения, до того как оно начинает принимать запросы, поэтому перенос
+ * задерживает запуск на все свое время - это не фоновый перенос при работающем приложении. Порции ограничивают
+ * длину транзакций и блокировок (и объем журнала отката), контрольные точки позволяют не начинать прерванный перенос
+ * заново. Пауза между порциями нужна, только если миграции применяются отдельно от запуска (flyway migrate из
+ * командной строки), пока запросы обслуживает работающая предыдущая версия приложения; при запуске она лишь
+ * удлиняет простой, поэтому по умолчанию отключена.
+ *
+ * Порядок изменения схемы: before добавляет новые столбцы/таблицы, migrateChunk переносит строки, after удаляет
+ * старые столбцы. Строки, добавленные во время переноса, тоже обрабатываются: перенос повторяется, пока растет
+ * максимальный id.
+ *
+ * Размер порции и паузу задают placeholders Flyway (spring.flyway.placeholders.*):
+ * backfill-chunk-size (по умолчанию 500 id) и backfill-throttle-ms (по умолчанию 0 - без паузы).
+ *
+ * Наследники размещаются в пакете db.migration с именем по правилам Flyway, например V011__Split_book_blobs
+ * (перенос LOB в отдельные таблицы) или V016__Backfill_book_search_columns (через NormalizedColumnsBackfill).
+ */
+public abstract class ChunkedBackfillMigration extends BaseJavaMigration {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedBackfillMigration.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+    static final long DEFAULT_THROTTLE_MS = 0;
+    static final long PROGRESS_LOG_INTERVAL_MS = 10_000;    // как часто писать в лог о ходе переноса
+
+    // таблица, по диапазонам id которой выполняется перенос
+    protected abstract String getTable();
+
+    // столбец id таблицы (целочисленный первичный ключ)
+    protected String getIdColumn() {
+        return "id";
+    }
+
+    // наибольший размер порции для этой миграции (меньше настроенного - например, для строк с LOB в несколько мегабайт)
+    protected int getMaxChunkSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    // перенести строки с id в диапазоне [fromId, toId]; возвращает количество обработанных строк.
+    // Вызывается внутри транзакции порции, фиксировать ее (commit) не нужно
+    protected abstract int migrateChunk(Connection connection, long fromId, long toId) throws SQLException;
+
+    // подготовка перед переносом (например, добавление столбцов); выполняется и при продолжении прерванного переноса
+    protected void before(Connection connection) throws SQLException {
+    }
+
+    // завершение после переноса всех строк (например, создание индексов)
+    protected void after(Connection connection) throws SQLException {
+    }
+
+    // каждая порция фиксируется отдельно, поэтому миграция целиком не может выполняться в одной транзакции
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        Map<String, String> placeholders = context.getConfiguration().getPlaceholders();
+        int chunkSize = (int) Math.min(getMaxChunkSize(), placeholder(placeholders, "backfill-chunk-size", DEFAULT_CHUNK_SIZE));
+        long throttleMs = placeholder(placeholders, "backfill-throttle-ms", DEFAULT_THROTTLE_MS);
+        String name = getClass().getSimpleName();
+
+        createCheckpointTable(connection);
+        before(connection);
+
+        Long lastId = readCheckpoint(connection, name);
+        long rowsDone = 0;
+        if (lastId == null) {
+            lastId = minId(connection) - 1;
+            startCheckpoint(connection, name, lastId);
+        } else {
+            log.info("Backfill {}: resuming after id {}", name, lastId);
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long loggedAt = startedAt;
+        long maxId;
+        while ((maxId = maxId(connection)) > lastId) {
+            long fromId = lastId + 1;
+            long toId = Math.min(maxId, fromId + chunkSize - 1);
+            rowsDone += runChunk(connection, name, fromId, toId);
+            lastId = toId;
+
+            long now = System.currentTimeMillis();
+            if (now - loggedAt >= PROGRESS_LOG_INTERVAL_MS || lastId >= maxId) {
+                double seconds = Math.max(1, now - startedAt) / 1000.0;
+                log.info("Backfill {}: id {} of {}, {} rows processed ({} rows/s)",
+                        name, lastId, maxId, rowsDone, Math.round(rowsDone / seconds));
+                loggedAt = now;
+            }
+            if (throttleMs > 0 && lastId < maxId) Thread.sleep(throttleMs);
+        }
+
+        after(connection);
+        finishCheckpoint(connection, name);
+        log.info("Backfill {} finished, {} rows processed in {} s", name, rowsDone, (System.currentTimeMillis() - startedAt) / 1000);
+    }
+
+    // порция и ее контрольная точка фиксируются в одной транзакции: после сбоя порция либо выполнена и отмечена, либо нет
+    private int runChunk(Connection connection, String name, long fromId, long toId) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int rows = migrateChunk(connection, fromId, toId);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE backfill_checkpoint SET last_id = ?, rows_done = rows_done + ?, updated_at = NOW() WHERE name = ?")) {
+                ps.setLong(1, toId);
+                ps.setLong(2, rows);
+                ps.setString(3, name);
+                ps.executeUpdate();
+            }
+            connection.commit();
+            return rows;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private long minId(Connection connection) throws SQLException {
+        return queryLong(connection, "SELECT COALESCE(MIN(" + getIdColumn() + "), 1) FROM " + getTable());
+    }
+
+    private long maxId(Connection connection) throws SQLException {
+        return queryLong(connection, "SELECT COALESCE(MAX(" + getIdColumn() + "), 0) FROM " + getTable());
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // таблица контрольных точек (V012) создается и здесь: перенос может выполняться миграцией, предшествующей V012
+    private static void createCheckpointTable(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "CREATE TABLE IF NOT EXISTS backfill_checkpoint (" +
+                "name varchar(200) NOT NULL, " +
+                "last_id bigint NOT NULL, " +
+                "rows_done bigint NOT NULL DEFAULT '0', " +
+                "started_at datetime NOT NULL, " +
+                "updated_at datetime NOT NULL, " +
+                "finished_at datetime DEFAULT NULL, " +
+                "PRIMARY KEY (name)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")) {
+            ps.executeUpdate();
+        }
+    }
+
+    // последний обработанный id прерванного переноса (null, если перенос еще не начинался или завершен ранее)
+    private static Long readCheckpoint(Connection connection, String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT last_id FROM backfill_checkpoint WHERE name = ? AND finished_at IS NULL")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    private static void startCheckpoint(Connection connection, String name, long lastId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "REPLACE INTO backfill_checkpoint (name, last_id, rows_done, started_at, updated_at) VALUES (?, ?, 0, NOW(), NOW())")) {
+            ps.setString(1, name);
+            ps.setLong(2, lastId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void finishCheckpoint(Connection connection, String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE backfill_checkpoint SET finished_at = NOW() WHERE name = ?")) {
+            ps.setString(1, name);
+            ps.executeUpdate();
+        }
+    }
+
+    private static long placeholder(Map<String, String> placeholders, String key, long defaultValue) {
+        String value = placeholders.get(key);
+        return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,51 @@
+package library.migration;
+
+import library.search.SearchNormalizer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполнение нормализованных столбцов поиска (SearchNormalizer) по исходным столбцам таблицы порциями по id.
+ * Нормализация выполняется тем же кодом, что и при сохранении сущностей, поэтому значения совпадают с записываемыми
+ * приложением. Наследник задает таблицу и пары столбцов: исходный -> нормализованный.
+ */
+public abstract class NormalizedColumnsBackfill extends ChunkedBackfillMigration {
+
+    // исходный столбец -> нормализованный столбец (в порядке обхода)
+    protected abstract Map<String, String> getColumns();
+
+    @Override
+    protected int migrateChunk(Connection connection, long fromId, long toId) throws SQLException {
+        Map<String, String> columns = getColumns();
+        List<String> sources = new ArrayList<>(columns.keySet());
+        List<String> assignments = new ArrayList<>();
+        for (String target : columns.values()) assignments.add(target + " = ?");
+
+        String select = "SELECT " + getIdColumn() + ", " + String.join(", ", sources) + " FROM " + getTable() +
+                " WHERE " + getIdColumn() + " BETWEEN ? AND ?";
+        String update = "UPDATE " + getTable() + " SET " + String.join(", ", assignments) + " WHERE " + getIdColumn() + " = ?";
+        int rows = 0;
+        try (PreparedStatement read = connection.prepareStatement(select);
+             PreparedStatement write = connection.prepareStatement(update)) {
+            read.setLong(1, fromId);
+            read.setLong(2, toId);
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < sources.size(); i++)
+                        write.setString(i + 1, SearchNormalizer.normalize(rs.getString(i + 2)));
+                    write.setLong(sources.size() + 1, rs.getLong(1));
+                    write.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) write.executeBatch();
+        }
+        return rows;
+    }
+}
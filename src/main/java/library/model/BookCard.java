@@ -0,0 +1,47 @@
+package library.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.util.Locale;
+
+
+// Карточка книги для списков (полка, страница библиотеки): только то, что показывается на карточке.
+// Заполняется запросом-проекцией (select new library.model.BookCard(...)), поэтому столбцы content и image не читаются,
+// а обложка загружается отдельно - по хэшу imageHash
+@EqualsAndHashCode(of = "id")
+@Getter
+public class BookCard {
+
+    private final Long id;
+
+    private final String name;
+
+    private final String authorRuFio;
+
+    private final String authorEnFio;
+
+    private final int avgRating;
+
+    private final long viewCount;
+
+    private final String imageHash;
+
+    public BookCard(Long id, String name, String authorRuFio, String authorEnFio, int avgRating, long viewCount, String imageHash) {
+        this.id = id;
+        this.name = name;
+        this.authorRuFio = authorRuFio;
+        this.authorEnFio = authorEnFio;
+        this.avgRating = avgRating;
+        this.viewCount = viewCount;
+        this.imageHash = imageHash;
+    }
+
+    // фио автора на языке текущей локали (как AuthorEntity.getLocalizedFio)
+    public String getLocalizedAuthor() {
+        Locale locale = LocaleContextHolder.getLocale();
+        if ("ru".equals(locale.toString())) return authorRuFio;
+        else return authorEnFio;
+    }
+}
@@ -0,0 +1,75 @@
+package library.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Фильтр списка книг главной страницы: ключевые слова, жанр, автор, издательство, диапазон года издания,
+ * минимальный рейтинг (звезд) и диапазон количества страниц. Незаданные условия (null) не ограничивают список.
+ * Заполняется из параметров запроса с теми же именами.
+ */
+@Getter
+@Setter
+public class BookFilter {
+    private String keywords;
+    private Long genreId;
+    private Long authorId;
+    private Long publisherId;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Integer minRating;
+    private Integer pagesFrom;
+    private Integer pagesTo;
+
+    public boolean hasKeywords() {
+        return keywords != null && !keywords.trim().isEmpty();
+    }
+
+    // ни одно условие не задано
+    public boolean isEmpty() {
+        return !hasKeywords() && genreId == null && authorId == null && publisherId == null && yearFrom == null
+                && yearTo == null && minRating == null && pagesFrom == null && pagesTo == null;
+    }
+
+    // фильтр с условиями этого фильтра, к которым добавлены (или которые заменены) заданные условия other
+    public BookFilter merge(BookFilter other) {
+        BookFilter merged = copy();
+        if (other.hasKeywords()) merged.keywords = other.keywords;
+        if (other.genreId != null) merged.genreId = other.genreId;
+        if (other.authorId != null) merged.authorId = other.authorId;
+        if (other.publisherId != null) merged.publisherId = other.publisherId;
+        if (other.yearFrom != null) merged.yearFrom = other.yearFrom;
+        if (other.yearTo != null) merged.yearTo = other.yearTo;
+        if (other.minRating != null) merged.minRating = other.minRating;
+        if (other.pagesFrom != null) merged.pagesFrom = other.pagesFrom;
+        if (other.pagesTo != null) merged.pagesTo = other.pagesTo;
+        return merged;
+    }
+
+    // тот же фильтр без жанра (для подсчета количества книг по жанрам)
+    public BookFilter withoutGenre() {
+        BookFilter filter = copy();
+        filter.genreId = null;
+        return filter;
+    }
+
+    // строковое представление условий - ключ кэша результатов
+    public String toKey() {
+        return (hasKeywords() ? keywords.trim() : "") + "|" + genreId + "|" + authorId + "|" + publisherId + "|"
+                + yearFrom + "-" + yearTo + "|" + minRating + "|" + pagesFrom + "-" + pagesTo;
+    }
+
+    private BookFilter copy() {
+        BookFilter filter = new BookFilter();
+        filter.keywords = keywords;
+        filter.genreId = genreId;
+        filter.authorId = authorId;
+        filter.publisherId = publisherId;
+        filter.yearFrom = yearFrom;
+        filter.yearTo = yearTo;
+        filter.minRating = minRating;
+        filter.pagesFrom = pagesFrom;
+        filter.pagesTo = pagesTo;
+        return filter;
+    }
+}
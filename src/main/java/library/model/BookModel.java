@@ -44,6 +44,8 @@ public class BookModel {
 
     private byte[] image;
 
+    private String imageHash;       // ссылка на уже сохраненную обложку (при редактировании книги)
+
     private MultipartFile uploadedImage;
 
     private int avgRating;
@@ -56,14 +58,25 @@ public class BookModel {
 
     private String description;
 
+    // стартовая обложка (no-cover.jpg), читается с диска один раз; в хранилище она хранится в единственном экземпляре,
+    // сколько бы книг ее ни использовали
+    private static byte[] defaultImage;
+
     public BookModel() {
         // присвоение стартовой обложки (no-cover.jpg)
-        String path = "src/main/resources/static/images/no-cover.jpg";
-        try {
-            this.image = Files.readAllBytes(Paths.get(path));
-        } catch (IOException e) {
-            e.printStackTrace();
+        this.image = getDefaultImage();
+    }
+
+    private static synchronized byte[] getDefaultImage() {
+        if (defaultImage == null) {
+            String path = "src/main/resources/static/images/no-cover.jpg";
+            try {
+                defaultImage = Files.readAllBytes(Paths.get(path));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        return defaultImage;
     }
 
     public BookEntity toBookEntity(AuthorEntityService authorService, BookEntityService bookService, GenreEntityService genreService, PublisherEntityService publisherService) {
@@ -73,9 +86,9 @@ public class BookModel {
         entity.setName(name);
         entity.setPageCount(Integer.parseInt(pageCount));
         entity.setIsbn(isbn);
-        entity.setGenre(genreService.search(genre).get(0));
-        entity.setAuthor(authorService.search(author).get(0));
-        entity.setPublisher(publisherService.search(publisher).get(0));
+        entity.setGenre(genreService.findByName(genre));
+        entity.setAuthor(authorService.findByFio(author));
+        entity.setPublisher(publisherService.findByName(publisher));
         entity.setPublishYear(Integer.parseInt(publishYear));
         entity.setAvgRating(avgRating);
         entity.setTotalVoteCount(totalVoteCount);
@@ -83,18 +96,19 @@ public class BookModel {
         entity.setViewCount(viewCount);
         entity.setDescription(description);
 
+        // загруженные файлы не читаются в память (getBytes), а передаются книге как источники данных;
+        // без новой обложки у книги остается сохраненная (ее хэш), пустой массив обложкой не считается
         if (uploadedImage != null && uploadedImage.getSize() > 199)
-            try {
-                entity.setImage(uploadedImage.getBytes());
-            } catch (IOException e) {e.printStackTrace();}
-        else entity.setImage(image);
+            entity.setImageSource(uploadedImage);
+        else if (imageHash != null && !imageHash.isEmpty()) entity.setImageHash(imageHash);
+        else if (image != null && image.length > 0) entity.setImage(image);
 
+        // без нового файла содержание не меняется: сохраняется прежний хэш, а содержание, еще не перенесенное
+        // в хранилище, остается в таблице book_content (в память не читается)
         if (uploadedContent != null && uploadedContent.getSize() > 199)
-            try {
-                entity.setContent(uploadedContent.getBytes());
-            } catch (IOException e) {e.printStackTrace();}
+            entity.setContentSource(uploadedContent);
         else if (entity.getId() != null)
-            entity.setContent(bookService.getContent(entity.getId()));
+            entity.setContentHash(bookService.getContentHash(entity.getId()));
 
         return entity;
     }
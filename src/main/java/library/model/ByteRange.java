@@ -0,0 +1,97 @@
+package library.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Диапазон байтов из http-заголовка Range (RFC 7233). Используется для частичной отдачи содержания книг
+ * (pdf-просмотрщики браузеров запрашивают документ по частям, а прерванные загрузки докачиваются).
+ */
+@Getter
+public class ByteRange {
+    // максимальное количество диапазонов в одном запросе (защита от запросов из тысяч мелких диапазонов)
+    static final int MAX_RANGES = 20;
+
+    private final long start;       // номер первого байта диапазона (начиная с 0)
+    private final long end;         // номер последнего байта диапазона (включительно)
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    // значение заголовка Content-Range для этого диапазона
+    public String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+
+    /**
+     * Разбирает заголовок Range для ресурса длиной totalLength.
+     * Возвращает null, если заголовка нет или он не распознан (нужно отдать ресурс целиком),
+     * и пустой список, если ни один из диапазонов не удовлетворим (нужно ответить 416).
+     * Пересекающиеся и соседние диапазоны объединяются (RFC 7233, 6.1), результат упорядочен по началу диапазона:
+     * каждый байт ресурса отдается не больше одного раза, сколько бы перекрывающихся диапазонов ни было в запросе.
+     */
+    public static List<ByteRange> parse(String header, long totalLength) {
+        if (header == null || !header.startsWith("bytes=")) return null;
+
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) return null;
+            String startStr = spec.substring(0, dash).trim();
+            String endStr = spec.substring(dash + 1).trim();
+            try {
+                long start;
+                long end;
+                if (startStr.isEmpty()) {
+                    // суффиксный диапазон (-500 - последние 500 байт)
+                    long suffix = Long.parseLong(endStr);
+                    if (suffix <= 0) continue;
+                    start = Math.max(0, totalLength - suffix);
+                    end = totalLength - 1;
+                } else {
+                    start = Long.parseLong(startStr);
+                    // открытый диапазон (500- - с 500-го байта до конца); за пределами ресурса он неудовлетворим, а не неверен
+                    end = endStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(endStr);
+                    if (end < start) return null;           // синтаксически неверный диапазон - заголовок игнорируется
+                    end = Math.min(end, totalLength - 1);
+                }
+                if (start >= totalLength) continue;     // диапазон за пределами ресурса
+                ranges.add(new ByteRange(start, end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return merge(ranges);
+    }
+
+    // объединение пересекающихся и соседних диапазонов (результат упорядочен по началу)
+    static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() < 2) return ranges;
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (ByteRange range : ranges.subList(1, ranges.size())) {
+            if (range.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, range.end));
+            } else {
+                merged.add(current);
+                current = range;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
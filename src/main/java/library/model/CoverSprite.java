@@ -0,0 +1,65 @@
+package library.model;
+
+import library.domain.CoverSize;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Спрайт обложек: обложки нескольких книг одного размера, склеенные в одно изображение столбцом
+// (обложка i-й книги занимает ячейку size.getWidth() x size.getHeight() со смещением i * size.getHeight() по вертикали).
+// Позволяет показать обложки всей страницы одним запросом вместо запроса на каждую книгу.
+// Спрайт собирается только из готовых уменьшенных копий; ячейка книги, копия обложки которой еще не изготовлена, пустая
+@Getter
+public class CoverSprite {
+    public static final int MAX_COVERS = 60;    // ограничение количества обложек в одном спрайте
+
+    private final CoverSize size;
+    private final List<Cell> cells;
+
+    public CoverSprite(CoverSize size, List<Cell> cells) {
+        this.size = size;
+        this.cells = cells;
+    }
+
+    // ETag спрайта - производная от размера и хэшей уменьшенных копий его обложек (пустая ячейка - "-");
+    // он же - версия содержимого, по которой изображение спрайта хранится в кэше
+    public String getETag() {
+        StringBuilder key = new StringBuilder(size.name());
+        for (Cell cell : cells)
+            key.append(':').append(cell.getRenditionHash() != null ? cell.getRenditionHash() : "-");
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // в спрайте есть все обложки: пустые ячейки только у книг без обложки (а не у тех, чьи копии еще изготавливаются)
+    public boolean isExact() {
+        return cells.stream().allMatch(cell -> cell.getRenditionHash() != null || !cell.isCovered());
+    }
+
+    // версия спрайта для адреса (параметр v): меняется при замене любой из его исходных обложек
+    public String getVersion() {
+        return version(cells.stream().map(Cell::getImageHash).collect(Collectors.toList()));
+    }
+
+    public static String version(List<String> imageHashes) {
+        String key = imageHashes.stream().map(String::valueOf).collect(Collectors.joining(":"));
+        return DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // обложка одной книги: хэш уменьшенной копии (null, если копия не изготовлена), хэш исходной обложки
+    // и наличие обложки у книги (в т.ч. еще хранящейся в таблице book_cover, без хэша)
+    @Getter
+    public static class Cell {
+        private final String renditionHash;
+        private final String imageHash;
+        private final boolean covered;
+
+        public Cell(String renditionHash, String imageHash, boolean covered) {
+            this.renditionHash = renditionHash;
+            this.imageHash = imageHash;
+            this.covered = covered;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package library.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Страница карточек книг при просмотре по ключу (keyset): книги страницы, общее количество книг и позиции первой
+ * и последней книги страницы, от которых запрашиваются предыдущая и следующая страницы.
+ */
+@Getter
+public class KeysetPage {
+    // какую страницу запросить: первую, следующую за позицией, предшествующую позиции, последнюю
+    public enum Seek {
+        FIRST, AFTER, BEFORE, LAST
+    }
+
+    private final List<BookCard> content;
+    private final long total;
+
+    public KeysetPage(List<BookCard> content, long total) {
+        this.content = content;
+        this.total = total;
+    }
+
+    // позиция первой книги страницы (null, если страница пуста)
+    public String getFirstCursor() {
+        return content.isEmpty() ? null : PageCursor.of(content.get(0)).encode();
+    }
+
+    // позиция последней книги страницы (null, если страница пуста)
+    public String getLastCursor() {
+        return content.isEmpty() ? null : PageCursor.of(content.get(content.size() - 1)).encode();
+    }
+
+    // количество страниц размера pageSize
+    public int getTotalPages(int pageSize) {
+        return pageSize == 0 ? 1 : (int) Math.ceil((double) total / pageSize);
+    }
+}
@@ -0,0 +1,46 @@
+package library.model;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в списке книг для постраничного просмотра по ключу (keyset): значение ключа сортировки (количество просмотров)
+ * и id книги (для однозначного порядка книг с одинаковым количеством просмотров).
+ * Снаружи передается непрозрачной строкой (encode/parse), поэтому способ сортировки можно менять, не меняя клиентов.
+ */
+@Getter
+public class PageCursor {
+    private static final String SORT_KEY = "viewCount";
+
+    private final long viewCount;
+    private final long id;
+
+    public PageCursor(long viewCount, long id) {
+        this.viewCount = viewCount;
+        this.id = id;
+    }
+
+    // позиция карточки книги
+    public static PageCursor of(BookCard card) {
+        return new PageCursor(card.getViewCount(), card.getId());
+    }
+
+    public String encode() {
+        String value = SORT_KEY + ":" + viewCount + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // разбирает строку, полученную от encode (null, если строки нет или она не распознана)
+    public static PageCursor parse(String token) {
+        if (token == null || token.isEmpty()) return null;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3 || !SORT_KEY.equals(parts[0])) return null;
+            return new PageCursor(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {      // в т.ч. NumberFormatException
+            return null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package library.processing;
+
+import library.domain.CoverSize;
+import library.domain.ProcessingStatus;
+import library.cache.SearchResultCache;
+import library.repository.BookEntityRepo;
+import library.search.FacetIndex;
+import library.service.BookContentMetaEntityService;
+import library.service.BookCoverRenditionEntityService;
+import library.service.BookProcessingEntityService;
+import library.service.TransactionHooks;
+import library.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фоновая обработка книги после сохранения: проверка структуры pdf, подсчет количества страниц (если оно не указано),
+ * изготовление уменьшенных копий обложки и запись метаданных содержания. Выполняется в ограниченном пуле потоков
+ * (bookProcessingExecutor), поэтому запрос на сохранение книги завершается сразу после записи ее данных в хранилище.
+ *
+ * Очередь обработки - строки book_processing в состоянии PENDING. Сохраненная книга сразу передается в пул, если в его
+ * очереди есть место; остальные книги (в т.ч. все книги после миграции, ставящей в очередь весь каталог) периодически
+ * выбираются из book_processing порциями по свободному месту в очереди пула (library.processing.poll-ms), поэтому
+ * очередь пула не переполняется, а обработка всего каталога завершается без перезапусков.
+ */
+@Component
+public class BookProcessingPipeline {
+    private static final Logger log = LoggerFactory.getLogger(BookProcessingPipeline.class);
+    static final int MAX_MESSAGE_LENGTH = 500;
+
+    final BookEntityRepo bookRepo;
+    final BlobStore blobStore;
+    final BookProcessingEntityService processingService;
+    final BookContentMetaEntityService contentMetaService;
+    final BookCoverRenditionEntityService renditionService;
+    final ThreadPoolTaskExecutor executor;
+    final FacetIndex facetIndex;
+    final SearchResultCache resultCache;
+
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();     // книги, переданные в пул и еще не обработанные
+
+    public BookProcessingPipeline(BookEntityRepo bookRepo, BlobStore blobStore,
+                                  BookProcessingEntityService processingService,
+                                  BookContentMetaEntityService contentMetaService,
+                                  BookCoverRenditionEntityService renditionService,
+                                  ThreadPoolTaskExecutor bookProcessingExecutor,
+                                  FacetIndex facetIndex, SearchResultCache resultCache) {
+        this.bookRepo = bookRepo;
+        this.blobStore = blobStore;
+        this.processingService = processingService;
+        this.contentMetaService = contentMetaService;
+        this.renditionService = renditionService;
+        this.executor = bookProcessingExecutor;
+        this.facetIndex = facetIndex;
+        this.resultCache = resultCache;
+    }
+
+    // ставит книгу в очередь на обработку
+    public void submit(long bookId) {
+        processingService.setStatus(bookId, ProcessingStatus.PENDING, null);
+        // в транзакции сохранения книга передается в обработку после фиксации (до нее обработка книгу не увидит)
+        TransactionHooks.afterCommit(() -> enqueue(bookId));
+    }
+
+    // возобновляет обработку, прерванную остановкой приложения
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        int interrupted = processingService.resetInterrupted();
+        if (interrupted > 0) log.info("Processing of {} books was interrupted and will be repeated", interrupted);
+        drainPending();
+    }
+
+    // передает в пул ожидающие обработки книги - столько, сколько помещается в очередь пула
+    @Scheduled(initialDelayString = "${library.processing.poll-ms:5000}", fixedDelayString = "${library.processing.poll-ms:5000}")
+    public void drainPending() {
+        int free = executor.getThreadPoolExecutor().getQueue().remainingCapacity();
+        if (free <= 0) return;
+        // книги, уже переданные в пул, остаются PENDING до начала обработки - они пропускаются
+        for (Long bookId : processingService.findPending(free + queued.size())) {
+            if (free == 0) break;
+            if (queued.contains(bookId)) continue;
+            if (!enqueue(bookId)) break;
+            free--;
+        }
+    }
+
+    // передать книгу в пул (false, если очередь пула заполнена - книга останется PENDING до следующей выборки)
+    private boolean enqueue(long bookId) {
+        if (!queued.add(bookId)) return true;
+        try {
+            executor.execute(() -> process(bookId));
+            return true;
+        } catch (TaskRejectedException e) {
+            queued.remove(bookId);
+            log.debug("Processing queue is full, book {} stays pending", bookId);
+            return false;
+        }
+    }
+
+    void process(long bookId) {
+        try {
+            processBook(bookId);
+        } finally {
+            queued.remove(bookId);
+        }
+    }
+
+    private void processBook(long bookId) {
+        try {
+            if (!bookRepo.existsById(bookId)) return;   // книгу удалили, пока она ждала в очереди
+            processingService.setStatus(bookId, ProcessingStatus.PROCESSING, null);
+
+            // содержание: проверка структуры pdf и подсчет страниц
+            String contentHash = bookRepo.getContentHash(bookId);
+            if (contentHash != null) {
+                PdfInspector.Result pdf;
+                try (InputStream in = blobStore.open(contentHash)) {
+                    pdf = PdfInspector.inspect(in);
+                }
+                if (!pdf.isValid()) {
+                    processingService.setStatus(bookId, ProcessingStatus.FAILED, pdf.getError());
+                    return;
+                }
+                // количество страниц, указанное администратором, не перезаписывается - подсчет по файлу нужен,
+                // только если оно не указано; фильтр по количеству страниц и списки книг обновляются после фиксации
+                int pageCount = bookRepo.getPageCount(bookId);
+                if (pageCount <= 0 && pdf.getPageCount() > 0) {
+                    pageCount = pdf.getPageCount();
+                    bookRepo.updatePageCount(bookId, pageCount);
+                    TransactionHooks.afterCommit(() -> {
+                        facetIndex.update(bookId);
+                        resultCache.bump();
+                    });
+                }
+                contentMetaService.update(bookId, contentHash, pageCount);
+            }
+
+            // обложка: уменьшенные копии
+            String imageHash = bookRepo.getImageHash(bookId);
+            if (imageHash != null) {
+                byte[] image = blobStore.get(imageHash);
+                for (CoverSize size : CoverSize.values()) {
+                    CoverRenderer.Rendition rendition = CoverRenderer.render(image, size);
+                    renditionService.save(bookId, size, rendition.getBytes(), rendition.getWidth(), rendition.getHeight());
+                }
+            }
+
+            processingService.setStatus(bookId, ProcessingStatus.DONE, null);
+        } catch (Exception e) {
+            log.warn("Processing of book {} failed", bookId, e);
+            try {
+                processingService.setStatus(bookId, ProcessingStatus.FAILED, truncate(String.valueOf(e.getMessage())));
+            } catch (Exception statusException) {
+                log.warn("Unable to record processing failure of book {}", bookId, statusException);
+            }
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
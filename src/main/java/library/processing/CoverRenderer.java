@@ -0,0 +1,101 @@
+package library.processing;
+
+import library.domain.CoverSize;
+import lombok.Getter;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Изготовление уменьшенных копий обложки. Обложка вписывается в размер CoverSize с сохранением пропорций
+ * (не увеличивается) и кодируется в jpeg. Сильное уменьшение выполняется в несколько шагов (каждый - не более
+ * чем вдвое), иначе билинейная интерполяция дает заметные артефакты.
+ */
+public class CoverRenderer {
+
+    @Getter
+    public static class Rendition {
+        private final byte[] bytes;
+        private final int width;
+        private final int height;
+
+        Rendition(byte[] bytes, int width, int height) {
+            this.bytes = bytes;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static Rendition render(byte[] image, CoverSize size) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        if (source == null) throw new IOException("Unsupported cover image format");
+
+        double scale = Math.min(1.0, Math.min((double) size.getWidth() / source.getWidth(),
+                                              (double) size.getHeight() / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage result = scale(toRgb(source), width, height);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(result, "jpg", out);
+        return new Rendition(out.toByteArray(), width, height);
+    }
+
+    // Спрайт: обложки растягиваются до размера size (как и на странице) и ставятся столбцом одна под другой.
+    // На месте отсутствующей (null) или нечитаемой обложки остается белая ячейка
+    public static byte[] sprite(List<byte[]> images, CoverSize size) throws IOException {
+        int width = size.getWidth();
+        int height = size.getHeight();
+        BufferedImage sprite = new BufferedImage(width, height * Math.max(1, images.size()), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, sprite.getWidth(), sprite.getHeight());
+        for (int i = 0; i < images.size(); i++) {
+            if (images.get(i) == null) continue;
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(images.get(i)));
+            if (source == null) continue;
+            g.drawImage(scale(toRgb(source), width, height), 0, i * height, null);
+        }
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(sprite, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // уменьшение в несколько шагов (не более чем вдвое за шаг), затем точная подгонка под width x height
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != width || current.getHeight() != height) {
+            current = resize(current, width, height);
+        }
+        return current;
+    }
+
+    // jpeg не поддерживает прозрачность, поэтому изображение переводится в RGB на белом фоне
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) return image;
+        return resize(image, image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return result;
+    }
+}
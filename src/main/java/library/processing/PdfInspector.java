@@ -0,0 +1,88 @@
+package library.processing;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Проверка структуры pdf и подсчет его страниц без сторонних библиотек. Файл читается потоком, буфером
+ * фиксированного размера, поэтому расход памяти не зависит от размера файла.
+ *
+ * Количество страниц - /Count корня дерева страниц (наибольшее значение /Count в файле: у корня оно не меньше,
+ * чем у любого промежуточного узла). Словари страниц (/Type /Page) считаются, только если /Count не найден:
+ * в pdf с дописанными изменениями (incremental update) хранятся и устаревшие копии словарей, поэтому их количество
+ * бывает больше реального. Если не найдено ни того, ни другого - количество страниц считается неизвестным (0).
+ */
+public class PdfInspector {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int TAIL_SIZE = 1024;      // маркер %%EOF должен находиться в последних 1024 байтах файла
+    static final int MARGIN = 32;           // совпадения ближе к концу буфера откладываются до следующего чтения
+
+    static final Pattern PAGE = Pattern.compile("/Type\\s{0,8}/Page(?![A-Za-z])");
+    static final Pattern COUNT = Pattern.compile("/Count\\s{1,8}(\\d{1,7})");
+
+    @Getter
+    public static class Result {
+        private final boolean valid;
+        private final String error;         // причина, по которой файл не является корректным pdf
+        private final int pageCount;        // 0 - количество страниц определить не удалось
+
+        Result(boolean valid, String error, int pageCount) {
+            this.valid = valid;
+            this.error = error;
+            this.pageCount = pageCount;
+        }
+    }
+
+    public static Result inspect(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE + TAIL_SIZE];
+        int length = 0;             // количество данных в буфере
+        long base = 0;              // позиция начала буфера в файле
+        long countedUpTo = 0;       // позиция в файле, до которой совпадения уже учтены
+        int pages = 0;
+        int maxCount = 0;
+        boolean first = true;
+
+        while (true) {
+            int read = in.read(buffer, length, buffer.length - length);
+            boolean eof = read == -1;
+            if (!eof) length += read;
+            if (!eof && length < buffer.length) continue;   // дочитываем буфер до конца
+
+            if (first) {
+                if (length < 5 || !new String(buffer, 0, 5, StandardCharsets.US_ASCII).equals("%PDF-"))
+                    return new Result(false, "Missing %PDF- header", 0);
+                first = false;
+            }
+
+            String text = new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+            int limit = eof ? length : length - MARGIN;
+            Matcher page = PAGE.matcher(text);
+            while (page.find()) {
+                long end = base + page.end();
+                if (end > countedUpTo && page.end() <= limit) pages++;
+            }
+            Matcher count = COUNT.matcher(text);
+            while (count.find()) {
+                long end = base + count.end();
+                if (end > countedUpTo && count.end() <= limit) maxCount = Math.max(maxCount, Integer.parseInt(count.group(1)));
+            }
+            countedUpTo = base + limit;
+
+            if (eof) {
+                String tail = text.substring(Math.max(0, length - TAIL_SIZE));
+                if (!tail.contains("%%EOF")) return new Result(false, "Missing %%EOF trailer", 0);
+                return new Result(true, null, maxCount > 0 ? maxCount : pages);
+            }
+
+            // последние TAIL_SIZE байт переносятся в начало буфера (для совпадений на границе и проверки окончания файла)
+            System.arraycopy(buffer, length - TAIL_SIZE, buffer, 0, TAIL_SIZE);
+            base += length - TAIL_SIZE;
+            length = TAIL_SIZE;
+        }
+    }
+}
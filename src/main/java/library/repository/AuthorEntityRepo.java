@@ -12,15 +12,27 @@ import java.util.List;
 public interface AuthorEntityRepo extends JpaRepository<AuthorEntity, Long> {
 
     // поиск авторов по фио без постраничности
-    // найти авторов, значение поля fio которых содержит (в любом месте (начале, конце, середине))
-    // переданную строку игнорируя раскладку, результаты отсортировать по значению поля fio
-    List<AuthorEntity> findByRuFioContainingIgnoreCaseOrderByRuFio(String fio);
-    List<AuthorEntity> findByEnFioContainingIgnoreCaseOrderByEnFio(String fio);
+    // найти авторов, нормализованное фио которых (searchRuFio/searchEnFio, см. SearchNormalizer) начинается
+    // с переданной строки (тоже нормализованной) - поиск по индексу, результаты отсортировать по значению поля fio
+    List<AuthorEntity> findBySearchRuFioStartingWithOrderByRuFio(String fio);
+    List<AuthorEntity> findBySearchEnFioStartingWithOrderByEnFio(String fio);
+    // то же по вхождению в любом месте фио - без индекса (просмотр столбца), если по началу ничего не найдено
+    List<AuthorEntity> findBySearchRuFioContainingOrderByRuFio(String fio);
+    List<AuthorEntity> findBySearchEnFioContainingOrderByEnFio(String fio);
 
     // поиск авторов по фио с постраничностью
     // Page содержит некоторое количество результатов запроса
     // Pageable - параметры постраничности (сколько результатов выводит на одной странице и т.д.)
-    Page<AuthorEntity> findByRuFioContainingIgnoreCaseOrderByRuFio(String fio, Pageable pageable);
-    Page<AuthorEntity> findByEnFioContainingIgnoreCaseOrderByEnFio(String fio, Pageable pageable);
+    Page<AuthorEntity> findBySearchRuFioStartingWithOrderByRuFio(String fio, Pageable pageable);
+    Page<AuthorEntity> findBySearchEnFioStartingWithOrderByEnFio(String fio, Pageable pageable);
+    Page<AuthorEntity> findBySearchRuFioContainingOrderByRuFio(String fio, Pageable pageable);
+    Page<AuthorEntity> findBySearchEnFioContainingOrderByEnFio(String fio, Pageable pageable);
 
+    // есть ли совпадения по началу нормализованного поля (для выбора между поиском по началу и по вхождению)
+    boolean existsBySearchRuFioStartingWith(String text);
+    boolean existsBySearchEnFioStartingWith(String text);
+
+    // точный поиск по нормализованному полю
+    AuthorEntity findFirstBySearchRuFio(String text);
+    AuthorEntity findFirstBySearchEnFio(String text);
 }
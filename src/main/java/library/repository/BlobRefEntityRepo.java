@@ -0,0 +1,37 @@
+package library.repository;
+
+import library.domain.BlobRefEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface BlobRefEntityRepo extends JpaRepository<BlobRefEntity, String> {
+
+    // добавляет ссылку на объект (создает счетчик, если его еще нет) - атомарно, одним запросом
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(value = "INSERT INTO blob_ref (hash, ref_count) VALUES (:hash, 1) ON DUPLICATE KEY UPDATE ref_count = ref_count + 1",
+            nativeQuery = true)
+    void increment(@Param("hash") String hash);
+
+    // убирает ссылку на объект
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("update BlobRefEntity r set r.refCount=r.refCount - 1 where r.hash=:hash and r.refCount > 0")
+    void decrement(@Param("hash") String hash);
+
+    // количество ссылок на объект (null, если счетчика нет) с блокировкой счетчика до конца транзакции: пока она не
+    // завершена, добавить ссылку на объект (increment) нельзя - в т.ч. если счетчика нет (блокируется его место в индексе)
+    @Query(value = "SELECT ref_count FROM blob_ref WHERE hash = :hash FOR UPDATE", nativeQuery = true)
+    Integer lockRefCount(@Param("hash") String hash);
+
+    // удаляет счетчик объекта, на который не осталось ссылок; возвращает 1, если счетчик был удален
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("delete from BlobRefEntity r where r.hash=:hash and r.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+}
@@ -0,0 +1,9 @@
+package library.repository;
+
+import library.domain.BookContentMetaEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BookContentMetaEntityRepo extends JpaRepository<BookContentMetaEntity, Long> {
+}
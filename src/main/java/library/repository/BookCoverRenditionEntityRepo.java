@@ -0,0 +1,17 @@
+package library.repository;
+
+import library.domain.BookCoverRenditionEntity;
+import library.domain.CoverSize;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookCoverRenditionEntityRepo extends JpaRepository<BookCoverRenditionEntity, Long> {
+    Optional<BookCoverRenditionEntity> findByBookIdAndSize(long bookId, CoverSize size);
+    List<BookCoverRenditionEntity> findByBookId(long bookId);
+    List<BookCoverRenditionEntity> findByBookIdInAndSize(Collection<Long> bookIds, CoverSize size);
+}
@@ -1,8 +1,10 @@
 package library.repository;
 
 import library.domain.BookEntity;
+import library.model.BookCard;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,56 +12,221 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BookEntityRepo extends JpaRepository<BookEntity, Long> {
 
-    // поиск книг по имени книги и/или фио автора
-    // AuthorFioContaining... - поиск совпадения в поле fio объекта, находящегося в поле author книги
-    List<BookEntity> findByNameContainingIgnoreCaseOrAuthorRuFioContainingIgnoreCaseOrderByName(String name, String fio);
-    List<BookEntity> findByNameContainingIgnoreCaseOrAuthorEnFioContainingIgnoreCaseOrderByName(String name, String fio);
+    // поиск книг по началу имени книги и/или фио автора (параметры - нормализованные SearchNormalizer)
+    // AuthorSearchRuFioStartingWith... - поиск по началу поля searchRuFio объекта, находящегося в поле author книги;
+    // нормализованные столбцы сравниваются без upper(), поэтому LIKE 'текст%' выполняется по индексу
+    List<BookEntity> findBySearchNameStartingWithOrAuthorSearchRuFioStartingWithOrderByName(String name, String fio);
+    List<BookEntity> findBySearchNameStartingWithOrAuthorSearchEnFioStartingWithOrderByName(String name, String fio);
+    // то же по вхождению в любом месте - без индекса (просмотр столбцов), если по началу ничего не найдено
+    List<BookEntity> findBySearchNameContainingOrAuthorSearchRuFioContainingOrderByName(String name, String fio);
+    List<BookEntity> findBySearchNameContainingOrAuthorSearchEnFioContainingOrderByName(String name, String fio);
 
-    // поиск книг по имени книги и/или фио автора с постраничностью
-    Page<BookEntity> findByNameContainingIgnoreCaseOrAuthorRuFioContainingIgnoreCaseOrderByName(String name, String fio, Pageable pageable);
-    Page<BookEntity> findByNameContainingIgnoreCaseOrAuthorEnFioContainingIgnoreCaseOrderByName(String name, String fio, Pageable pageable);
+    // поиск книг по началу имени книги и/или фио автора с постраничностью
+    Page<BookEntity> findBySearchNameStartingWithOrAuthorSearchRuFioStartingWithOrderByName(String name, String fio, Pageable pageable);
+    Page<BookEntity> findBySearchNameStartingWithOrAuthorSearchEnFioStartingWithOrderByName(String name, String fio, Pageable pageable);
+    Page<BookEntity> findBySearchNameContainingOrAuthorSearchRuFioContainingOrderByName(String name, String fio, Pageable pageable);
+    Page<BookEntity> findBySearchNameContainingOrAuthorSearchEnFioContainingOrderByName(String name, String fio, Pageable pageable);
+    // есть ли совпадения по началу (для выбора между поиском по началу и по вхождению без лишнего запроса количества)
+    boolean existsBySearchNameStartingWithOrAuthorSearchRuFioStartingWith(String name, String fio);
+    boolean existsBySearchNameStartingWithOrAuthorSearchEnFioStartingWith(String name, String fio);
 
-    // создает страницу (Page) книг (BookEntity) для которых заполнены все поля, кроме content
-    @Query("select new BookEntity(b.id, b.name, b.pageCount, b.isbn, b.genre, b.author, b.publisher, b.publishYear, " +
-            "b.image, b.avgRating, b.totalVoteCount, b.totalRating, b.viewCount, b.description) from BookEntity b")
-    Page<BookEntity> findAllWithoutContent(Pageable pageable);  // возвращает список книг с постраничностью
+    // карточки книг (BookCard) для списков: без content и image, автор - через join
+    String CARD_SELECT = "select new library.model.BookCard(b.id, b.name, a.ruFio, a.enFio, b.avgRating, b.viewCount, b.imageHash) " +
+            "from BookEntity b join b.author a";
 
-    // обновляет книгу по id добавляя в нее контент
-    @Modifying(clearAutomatically = true)
-    @Query("update BookEntity b set b.content=:content where b.id=:id")     // :content - это ссылка на @Param("content")
-    void updateContent(@Param("content") byte[] content, @Param("id") long id);
+    // создает страницу карточек всех книг (Slice - без запроса количества книг, оно берется из BookCountCache)
+    @Query(CARD_SELECT)
+    Slice<BookCard> findAllCards(Pageable pageable);    // возвращает список карточек с постраничностью
+
+    // поля книг, индексируемые для поиска в памяти (BookSearchIndex): id, название, фио автора, издательство и жанр на обоих языках
+    String SEARCH_ROW_SELECT = "select b.id, b.name, a.ruFio, a.enFio, p.ruName, p.enName, g.ruName, g.enName " +
+            "from BookEntity b join b.author a join b.publisher p join b.genre g";
+
+    @Query(SEARCH_ROW_SELECT)
+    List<Object[]> findSearchRows();
+
+    @Query(SEARCH_ROW_SELECT + " where b.id = :id")
+    List<Object[]> findSearchRow(@Param("id") long id);
+
+    // поля книг для подсказок при вводе запроса (AutocompleteIndex): id, название, фио автора и издательство на обоих
+    // языках, количество просмотров (популярность)
+    String AUTOCOMPLETE_ROW_SELECT = "select b.id, b.name, a.ruFio, a.enFio, p.ruName, p.enName, b.viewCount " +
+            "from BookEntity b join b.author a join b.publisher p";
+
+    @Query(AUTOCOMPLETE_ROW_SELECT)
+    List<Object[]> findAutocompleteRows();
+
+    @Query(AUTOCOMPLETE_ROW_SELECT + " where b.id = :id")
+    List<Object[]> findAutocompleteRow(@Param("id") long id);
+
+    // поля книг для фасетов и фильтров (FacetIndex): id, жанр, автор и издательство (id и названия на обоих языках),
+    // год издания, рейтинг, количество страниц
+    String FACET_ROW_SELECT = "select b.id, g.id, g.ruName, g.enName, a.id, a.ruFio, a.enFio, p.id, p.ruName, p.enName, " +
+            "b.publishYear, b.avgRating, b.pageCount from BookEntity b left join b.genre g left join b.author a left join b.publisher p";
+
+    @Query(FACET_ROW_SELECT)
+    List<Object[]> findFacetRows();
+
+    @Query(FACET_ROW_SELECT + " where b.id = :id")
+    List<Object[]> findFacetRow(@Param("id") long id);
+
+    // карточки книг по списку id (порядок не сохраняется)
+    @Query(CARD_SELECT + " where b.id in :ids")
+    List<BookCard> findCardsByIds(@Param("ids") Collection<Long> ids);
+
+    // полнотекстовый поиск (индексы ft_* из V013): совпадения в названии, фио автора и описании находятся отдельно,
+    // каждое по своему индексу, и объединяются (UNION ALL); релевантность книги - взвешенная сумма релевантностей
+    // совпадений (название и автор важнее описания). :query - запрос MATCH ... AGAINST в BOOLEAN MODE
+    String FULLTEXT_MATCHES_RU = "SELECT id AS book_id, MATCH(name) AGAINST(:query IN BOOLEAN MODE) * 3 AS score FROM book " +
+            "WHERE MATCH(name) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL SELECT b.id, MATCH(a.ru_fio) AGAINST(:query IN BOOLEAN MODE) * 2 FROM author a JOIN book b ON b.author_id = a.id " +
+            "WHERE MATCH(a.ru_fio) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL SELECT id, MATCH(descr) AGAINST(:query IN BOOLEAN MODE) FROM book " +
+            "WHERE MATCH(descr) AGAINST(:query IN BOOLEAN MODE)";
+    String FULLTEXT_MATCHES_EN = "SELECT id AS book_id, MATCH(name) AGAINST(:query IN BOOLEAN MODE) * 3 AS score FROM book " +
+            "WHERE MATCH(name) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL SELECT b.id, MATCH(a.en_fio) AGAINST(:query IN BOOLEAN MODE) * 2 FROM author a JOIN book b ON b.author_id = a.id " +
+            "WHERE MATCH(a.en_fio) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL SELECT id, MATCH(descr) AGAINST(:query IN BOOLEAN MODE) FROM book " +
+            "WHERE MATCH(descr) AGAINST(:query IN BOOLEAN MODE)";
+
+    // id найденных книг в порядке убывания релевантности (страница limit книг, начиная с offset)
+    @Query(value = "SELECT m.book_id FROM (" + FULLTEXT_MATCHES_RU + ") m GROUP BY m.book_id " +
+            "ORDER BY SUM(m.score) DESC, m.book_id LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Number> searchFulltextRu(@Param("query") String query, @Param("limit") int limit, @Param("offset") long offset);
+    @Query(value = "SELECT m.book_id FROM (" + FULLTEXT_MATCHES_EN + ") m GROUP BY m.book_id " +
+            "ORDER BY SUM(m.score) DESC, m.book_id LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Number> searchFulltextEn(@Param("query") String query, @Param("limit") int limit, @Param("offset") long offset);
+
+    // количество найденных книг
+    @Query(value = "SELECT COUNT(DISTINCT m.book_id) FROM (" + FULLTEXT_MATCHES_RU + ") m", nativeQuery = true)
+    long countFulltextRu(@Param("query") String query);
+    @Query(value = "SELECT COUNT(DISTINCT m.book_id) FROM (" + FULLTEXT_MATCHES_EN + ") m", nativeQuery = true)
+    long countFulltextEn(@Param("query") String query);
 
     // обновляет количество просмотров книги по id
-    @Modifying(clearAutomatically = true)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
     @Transactional
     @Query("update BookEntity b set b.viewCount=:viewCount where b.id=:id")
     void updateViewCount(@Param("id") long id, @Param("viewCount") long viewCount);
 
+    // увеличивает количество просмотров книги по id на 1 (без загрузки самой книги)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("update BookEntity b set b.viewCount=b.viewCount + 1 where b.id=:id")
+    void incrementViewCount(@Param("id") long id);
+
+    // количество страниц книги по id
+    @Query("SELECT b.pageCount FROM BookEntity b WHERE b.id=:id")
+    int getPageCount(@Param("id") long id);
+
+    // обновляет количество страниц книги по id
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("update BookEntity b set b.pageCount=:pageCount where b.id=:id")
+    void updatePageCount(@Param("id") long id, @Param("pageCount") int pageCount);
+
     // обновляет данные рейтинга книги по id
-    @Modifying(clearAutomatically = true)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
     @Transactional
     @Query("update BookEntity b set b.totalRating=:tRating, b.totalVoteCount=:tVoteCount, b.avgRating=:avgRating where b.id=:id")
     void updateRating(@Param("id") long id, @Param("tRating") long tRating, @Param("tVoteCount") long tVoteCount, @Param("avgRating") int avgRating);
 
-    // Для топовых книг показываем только изображение (в классе Book должен быть соответствующий конструктор)
-    @Query("select new BookEntity(b.id, b.image) from BookEntity b")
-    List<BookEntity> findTopBooks(Pageable pageable);     // у книг будет заполнены только id и image
+    // просмотр карточек по ключу (keyset) в порядке (viewCount, id): книги после позиции (:viewCount, :id) или до нее
+    // (при :id = null - с начала или с конца); направление и количество задаются через Pageable -
+    // Sort.by(dir, "viewCount", "id") и PageRequest.of(0, size). Используют индексы idx_book_*view_count_id из V014
+    String AFTER_POSITION = "(:id is null or b.viewCount > :viewCount or (b.viewCount = :viewCount and b.id > :id))";
+    String BEFORE_POSITION = "(:id is null or b.viewCount < :viewCount or (b.viewCount = :viewCount and b.id < :id))";
+
+    @Query(CARD_SELECT + " where " + AFTER_POSITION)
+    List<BookCard> findCardsAfter(@Param("viewCount") Long viewCount, @Param("id") Long id, Pageable pageable);
+    @Query(CARD_SELECT + " where " + BEFORE_POSITION)
+    List<BookCard> findCardsBefore(@Param("viewCount") Long viewCount, @Param("id") Long id, Pageable pageable);
 
-    // поиск книг по жанру
-    @Query("select new BookEntity(b.id, b.name, b.pageCount, b.isbn, b.genre, b.author, b.publisher, b.publishYear, " +
-            "b.image, b.avgRating, b.totalVoteCount, b.totalRating, b.viewCount, b.description) from BookEntity b " +
-            "WHERE b.genre.id = :genreId")
-    Page<BookEntity> findByGenre(@Param("genreId") long genreId, Pageable pageable);
+    @Query(CARD_SELECT + " where b.genre.id = :genreId and " + AFTER_POSITION)
+    List<BookCard> findCardsByGenreAfter(@Param("genreId") long genreId, @Param("viewCount") Long viewCount, @Param("id") Long id, Pageable pageable);
+    @Query(CARD_SELECT + " where b.genre.id = :genreId and " + BEFORE_POSITION)
+    List<BookCard> findCardsByGenreBefore(@Param("genreId") long genreId, @Param("viewCount") Long viewCount, @Param("id") Long id, Pageable pageable);
 
-    // получение контента по id
-    @Query("SELECT b.content FROM BookEntity b WHERE b.id=:id")
+    // количество книг жанра
+    long countByGenreId(long genreId);
+
+    // количество книг по жанрам: id жанра и количество его книг (для BookCountCache)
+    @Query("select b.genre.id, count(b) from BookEntity b group by b.genre.id")
+    List<Object[]> countByGenres();
+
+    // id жанра книги по id книги
+    @Query("SELECT b.genre.id FROM BookEntity b WHERE b.id=:id")
+    Long getGenreId(@Param("id") long id);
+
+    // карточки топовых книг (сортировка и количество задаются через Pageable)
+    @Query(CARD_SELECT)
+    List<BookCard> findTopCards(Pageable pageable);
+
+    // поиск карточек книг по жанру (Slice - без запроса количества книг, оно берется из BookCountCache)
+    @Query(CARD_SELECT + " where b.genre.id = :genreId")
+    Slice<BookCard> findCardsByGenre(@Param("genreId") long genreId, Pageable pageable);
+
+    // получение контента, еще не перенесенного в хранилище объектов, по id
+    @Query("SELECT c.content FROM BookContentEntity c WHERE c.bookId=:id")
     byte[] getContent(@Param("id") long id);
 
+    // ссылка на контент в хранилище объектов по id
+    @Query("SELECT b.contentHash FROM BookEntity b WHERE b.id=:id")
+    String getContentHash(@Param("id") long id);
+
+    // ссылка на обложку в хранилище объектов по id
+    @Query("SELECT b.imageHash FROM BookEntity b WHERE b.id=:id")
+    String getImageHash(@Param("id") long id);
+
+    // только обложка книги по id: заполнены id, image и imageHash, остальные поля (в т.ч. содержание) не читаются
+    @Query("select new BookEntity(b.id, c.image, b.imageHash) from BookEntity b left join BookCoverEntity c on c.bookId = b.id " +
+            "where b.id = :id")
+    BookEntity findCover(@Param("id") long id);
+
+    // хэши обложек книг по списку id (одним запросом IN) - для спрайта обложек страницы; сами обложки не читаются.
+    // Строка: id, image_hash, id книги в book_cover (не null, если обложка еще хранится в таблице)
+    @Query("select b.id, b.imageHash, c.bookId from BookEntity b left join BookCoverEntity c on c.bookId = b.id " +
+            "where b.id in :ids")
+    List<Object[]> findCoverHashes(@Param("ids") Collection<Long> ids);
+
+    // обложка, хранящаяся в таблице book_cover (еще не перенесенная в хранилище объектов)
+    @Query("SELECT c.image FROM BookCoverEntity c WHERE c.bookId=:id")
+    byte[] getImage(@Param("id") long id);
+
+    // id книг, содержание или обложка которых еще хранятся в таблицах book_content и book_cover
+    @Query("SELECT b.id FROM BookEntity b WHERE EXISTS (SELECT c FROM BookContentEntity c WHERE c.bookId = b.id) " +
+            "OR EXISTS (SELECT i FROM BookCoverEntity i WHERE i.bookId = b.id) ORDER BY b.id")
+    List<Long> findIdsWithBlobsInTable(Pageable pageable);
+
+    // записывает ссылки на содержание и обложку в хранилище объектов
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("update BookEntity b set b.contentHash=:contentHash, b.imageHash=:imageHash where b.id=:id")
+    void replaceBlobsWithHashes(@Param("id") long id, @Param("contentHash") String contentHash, @Param("imageHash") String imageHash);
+
+    // удаляет содержание из таблицы book_content (после переноса в хранилище объектов)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("delete from BookContentEntity c where c.bookId=:id")
+    void deleteTableContent(@Param("id") long id);
+
+    // удаляет обложку из таблицы book_cover (после переноса в хранилище объектов)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("delete from BookCoverEntity c where c.bookId=:id")
+    void deleteTableImage(@Param("id") long id);
+
+    // размер контента по id в байтах (null, если контента нет)
+    @Query(value = "SELECT LENGTH(content) FROM book_content WHERE book_id = :id", nativeQuery = true)
+    Long getContentLength(@Param("id") long id);
+
     // получить все ISBN кроме ISBN книги с указанным id
     @Query("SELECT b.isbn FROM BookEntity b WHERE :id IS NULL OR b.isbn NOT IN (SELECT b1.isbn FROM BookEntity b1 WHERE b.id = :id)")
     List<String> getAllisbnExceptThis(@Param("id") Long id);
@@ -0,0 +1,27 @@
+package library.repository;
+
+import library.domain.BookProcessingEntity;
+import library.domain.ProcessingStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BookProcessingEntityRepo extends JpaRepository<BookProcessingEntity, Long> {
+    // первые книги в состоянии status (по id книги) - очередь обработки читается порциями
+    List<BookProcessingEntity> findByStatusOrderByBookId(ProcessingStatus status, Pageable pageable);
+
+    // перевести все книги из состояния from в состояние to
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("update BookProcessingEntity p set p.status = :to, p.updatedAt = current_timestamp where p.status = :from")
+    int updateStatus(@Param("from") ProcessingStatus from, @Param("to") ProcessingStatus to);
+    List<BookProcessingEntity> findByBookIdInAndStatusNot(Collection<Long> bookIds, ProcessingStatus status);
+}
@@ -11,12 +11,24 @@ import java.util.List;
 @Repository
 public interface GenreEntityRepo extends JpaRepository<GenreEntity, Long> {
 
-    // поиск жанров по имени
-    List<GenreEntity> findByRuNameContainingIgnoreCaseOrderByRuName(String ruName);
-    List<GenreEntity> findByEnNameContainingIgnoreCaseOrderByEnName(String enName);
+    // поиск жанров по началу нормализованного имени (SearchNormalizer; поиск по индексу)
+    List<GenreEntity> findBySearchRuNameStartingWithOrderByRuName(String ruName);
+    List<GenreEntity> findBySearchEnNameStartingWithOrderByEnName(String enName);
+    // то же по вхождению в любом месте названия - без индекса (просмотр столбца), если по началу ничего не найдено
+    List<GenreEntity> findBySearchRuNameContainingOrderByRuName(String ruName);
+    List<GenreEntity> findBySearchEnNameContainingOrderByEnName(String enName);
 
     // поиск жанров по имени с постраничностью
-    Page<GenreEntity> findByRuNameContainingIgnoreCaseOrderByRuName(String name, Pageable pageable);
-    Page<GenreEntity> findByEnNameContainingIgnoreCaseOrderByEnName(String name, Pageable pageable);
+    Page<GenreEntity> findBySearchRuNameStartingWithOrderByRuName(String name, Pageable pageable);
+    Page<GenreEntity> findBySearchEnNameStartingWithOrderByEnName(String name, Pageable pageable);
+    Page<GenreEntity> findBySearchRuNameContainingOrderByRuName(String name, Pageable pageable);
+    Page<GenreEntity> findBySearchEnNameContainingOrderByEnName(String name, Pageable pageable);
 
+    // есть ли совпадения по началу нормализованного поля (для выбора между поиском по началу и по вхождению)
+    boolean existsBySearchRuNameStartingWith(String text);
+    boolean existsBySearchEnNameStartingWith(String text);
+
+    // точный поиск по нормализованному полю
+    GenreEntity findFirstBySearchRuName(String text);
+    GenreEntity findFirstBySearchEnName(String text);
 }
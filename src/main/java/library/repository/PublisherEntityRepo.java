@@ -11,12 +11,24 @@ import java.util.List;
 @Repository
 public interface PublisherEntityRepo extends JpaRepository<PublisherEntity, Long> {
 
-    // поиск издателей по имени
-    List<PublisherEntity> findByRuNameContainingIgnoreCaseOrderByRuName(String name);
-    List<PublisherEntity> findByEnNameContainingIgnoreCaseOrderByEnName(String name);
+    // поиск издателей по началу нормализованного имени (SearchNormalizer; поиск по индексу)
+    List<PublisherEntity> findBySearchRuNameStartingWithOrderByRuName(String name);
+    List<PublisherEntity> findBySearchEnNameStartingWithOrderByEnName(String name);
+    // то же по вхождению в любом месте названия - без индекса (просмотр столбца), если по началу ничего не найдено
+    List<PublisherEntity> findBySearchRuNameContainingOrderByRuName(String name);
+    List<PublisherEntity> findBySearchEnNameContainingOrderByEnName(String name);
 
     // поиск издателей по имени с постраничностью
-    Page<PublisherEntity> findByRuNameContainingIgnoreCaseOrderByRuName(String name, Pageable pageable);
-    Page<PublisherEntity> findByEnNameContainingIgnoreCaseOrderByEnName(String name, Pageable pageable);
+    Page<PublisherEntity> findBySearchRuNameStartingWithOrderByRuName(String name, Pageable pageable);
+    Page<PublisherEntity> findBySearchEnNameStartingWithOrderByEnName(String name, Pageable pageable);
+    Page<PublisherEntity> findBySearchRuNameContainingOrderByRuName(String name, Pageable pageable);
+    Page<PublisherEntity> findBySearchEnNameContainingOrderByEnName(String name, Pageable pageable);
 
+    // есть ли совпадения по началу нормализованного поля (для выбора между поиском по началу и по вхождению)
+    boolean existsBySearchRuNameStartingWith(String text);
+    boolean existsBySearchEnNameStartingWith(String text);
+
+    // точный поиск по нормализованному полю
+    PublisherEntity findFirstBySearchRuName(String text);
+    PublisherEntity findFirstBySearchEnName(String text);
 }
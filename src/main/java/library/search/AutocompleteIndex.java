@@ -0,0 +1,308 @@
+package library.search;
+
+import library.repository.BookEntityRepo;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Подсказки при вводе поискового запроса: названия книг, фио авторов и названия издательств, начинающиеся с введенного
+ * текста (или содержащие слово, начинающееся с него), в порядке популярности.
+ * Популярность названия - количество просмотров книги, автора и издательства - суммарное количество просмотров их книг.
+ *
+ * Для каждого языка строится префиксное дерево (trie), в каждом узле которого заранее вычислены лучшие подсказки
+ * его поддерева, поэтому ответ на запрос - спуск на длину префикса и копирование готового списка, без обхода поддерева.
+ * Глубина дерева ограничена MAX_DEPTH символами: в узлах последнего уровня хранятся все проходящие через них подсказки,
+ * и префиксы длиннее MAX_DEPTH дофильтровываются по ним.
+ *
+ * Деревья неизменяемы: по сохраненным в памяти строкам книг строится новое дерево и подменяет прежнее, поэтому чтение
+ * не требует блокировок. При изменении книги из БД перечитывается только ее строка, а деревья перестраиваются в фоне
+ * (rebuildIfChanged) не чаще раза в library.autocomplete.rebuild-ms: серия изменений дает одно построение, а сохранение
+ * книги его не ждет. Популярность меняется и без сохранения книг (просмотры), поэтому строки всех книг периодически
+ * перечитываются (refreshWeights).
+ */
+@Component
+public class AutocompleteIndex {
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteIndex.class);
+
+    // максимальное количество подсказок в ответе (и в каждом узле дерева)
+    public static final int MAX_SUGGESTIONS = 10;
+    // глубина дерева в символах
+    static final int MAX_DEPTH = 12;
+
+    private final BookEntityRepo bookRepo;
+
+    private final Map<Long, Row> rows = new HashMap<>();       // id книги -> ее поля (изменяется под synchronized)
+    private boolean changed;                    // строки изменены после последнего построения деревьев
+    private Set<Long> changedDuringReload;      // книги, измененные во время перечитывания всех строк (null - его нет)
+    private final Object buildLock = new Object();              // построения выполняются по очереди
+    private volatile Trie ruTrie = Trie.EMPTY;
+    private volatile Trie enTrie = Trie.EMPTY;
+
+    public AutocompleteIndex(BookEntityRepo bookRepo) {
+        this.bookRepo = bookRepo;
+    }
+
+    public enum Type {
+        TITLE, AUTHOR, PUBLISHER
+    }
+
+    // подсказка: что это (название, автор, издательство), текст и id книги (только для названия)
+    @Getter
+    public static class Suggestion {
+        private final Type type;
+        private final String text;
+        private final Long bookId;
+        private final long weight;
+
+        Suggestion(Type type, String text, Long bookId, long weight) {
+            this.type = type;
+            this.text = text;
+            this.bookId = bookId;
+            this.weight = weight;
+        }
+    }
+
+    // строка запроса findAutocompleteRows: название, фио автора (ru, en), издательство (ru, en), количество просмотров
+    private static class Row {
+        final String name;
+        final String authorRu;
+        final String authorEn;
+        final String publisherRu;
+        final String publisherEn;
+        final long viewCount;
+
+        Row(Object[] row) {
+            name = (String) row[1];
+            authorRu = (String) row[2];
+            authorEn = (String) row[3];
+            publisherRu = (String) row[4];
+            publisherEn = (String) row[5];
+            viewCount = row[6] == null ? 0 : ((Number) row[6]).longValue();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        reload();
+        rebuildIfChanged();
+    }
+
+    // перечитать строки всех книг - обновить популярность подсказок
+    @Scheduled(initialDelayString = "${library.autocomplete.refresh-ms:600000}",
+               fixedDelayString = "${library.autocomplete.refresh-ms:600000}")
+    public void refreshWeights() {
+        reload();
+    }
+
+    // обновить подсказки книги (после ее сохранения); деревья перестраиваются в фоне
+    public void update(long bookId) {
+        List<Object[]> found = bookRepo.findAutocompleteRow(bookId);
+        synchronized (this) {
+            rows.remove(bookId);
+            for (Object[] row : found) rows.put(bookId, new Row(row));
+            changed(bookId);
+        }
+    }
+
+    // убрать подсказки книги (после ее удаления); деревья перестраиваются в фоне
+    public synchronized void remove(long bookId) {
+        rows.remove(bookId);
+        changed(bookId);
+    }
+
+    // перестроить деревья, если строки изменились; само построение - вне блокировки строк,
+    // изменения книг в это время не ждут, а лишь отмечают, что нужно следующее построение
+    @Scheduled(fixedDelayString = "${library.autocomplete.rebuild-ms:1000}")
+    public void rebuildIfChanged() {
+        synchronized (buildLock) {
+            Map<Long, Row> snapshot;
+            synchronized (this) {
+                if (!changed) return;
+                changed = false;
+                snapshot = new HashMap<>(rows);
+            }
+            long started = System.currentTimeMillis();
+            Trie ru = buildTrie(snapshot, false);
+            Trie en = buildTrie(snapshot, true);
+            ruTrie = ru;
+            enTrie = en;
+            log.debug("Autocomplete tries built: {} books in {} ms", snapshot.size(), System.currentTimeMillis() - started);
+        }
+    }
+
+    private void changed(long bookId) {
+        changed = true;
+        if (changedDuringReload != null) changedDuringReload.add(bookId);
+    }
+
+    // строки книг, измененных во время чтения всех строк, уже свежее прочитанных - они не заменяются
+    private void reload() {
+        synchronized (this) {
+            changedDuringReload = new HashSet<>();
+        }
+        try {
+            List<Object[]> found = bookRepo.findAutocompleteRows();
+            Map<Long, Row> loaded = new HashMap<>();
+            for (Object[] row : found) loaded.put(((Number) row[0]).longValue(), new Row(row));
+            synchronized (this) {
+                rows.keySet().removeIf(id -> !loaded.containsKey(id) && !changedDuringReload.contains(id));
+                for (Map.Entry<Long, Row> entry : loaded.entrySet())
+                    if (!changedDuringReload.contains(entry.getKey())) rows.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+        } finally {
+            synchronized (this) {
+                changedDuringReload = null;
+            }
+        }
+    }
+
+    // не больше limit подсказок для введенного текста на языке en или ru
+    public List<Suggestion> suggest(String prefix, int limit, boolean en) {
+        String key = String.join(" ", SearchNormalizer.tokenize(prefix));
+        if (key.isEmpty() || limit <= 0) return Collections.emptyList();
+        return (en ? enTrie : ruTrie).find(key, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    // подсказки языка: названия книг, авторы и издательства (одинаковые после нормализации объединяются, популярность суммируется)
+    private static Trie buildTrie(Map<Long, Row> rows, boolean en) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        Map<String, Suggestion> authors = new HashMap<>();
+        Map<String, Suggestion> publishers = new HashMap<>();
+        for (Map.Entry<Long, Row> entry : rows.entrySet()) {
+            Row row = entry.getValue();
+            if (row.name != null) suggestions.add(new Suggestion(Type.TITLE, row.name, entry.getKey(), row.viewCount));
+            merge(authors, Type.AUTHOR, en ? row.authorEn : row.authorRu, row.viewCount);
+            merge(publishers, Type.PUBLISHER, en ? row.publisherEn : row.publisherRu, row.viewCount);
+        }
+        suggestions.addAll(authors.values());
+        suggestions.addAll(publishers.values());
+        return Trie.build(suggestions);
+    }
+
+    private static void merge(Map<String, Suggestion> suggestions, Type type, String text, long weight) {
+        if (text == null) return;
+        suggestions.merge(SearchNormalizer.normalize(text), new Suggestion(type, text, null, weight),
+                (a, b) -> new Suggestion(type, a.text, null, a.weight + b.weight));
+    }
+
+    // Неизменяемое префиксное дерево подсказок.
+    // Подсказки пронумерованы в порядке убывания популярности, поэтому лучшие подсказки узла - это просто наименьшие номера
+    private static class Trie {
+        static final Trie EMPTY = build(Collections.emptyList());
+
+        private final Suggestion[] suggestions;
+        private final String[] keys;        // нормализованный текст подсказки (слова через один пробел)
+        private final Node root;
+
+        private Trie(Suggestion[] suggestions, String[] keys, Node root) {
+            this.suggestions = suggestions;
+            this.keys = keys;
+            this.root = root;
+        }
+
+        // узел: символы переходов (по возрастанию) и соответствующие им дочерние узлы, лучшие подсказки поддерева;
+        // в узлах глубины MAX_DEPTH - все подсказки поддерева: номер подсказки и начало ключа (номер символа) в одном long
+        private static class Node {
+            final char[] labels;
+            final Node[] children;
+            final int[] top;
+            final long[] bucket;
+
+            Node(char[] labels, Node[] children, int[] top, long[] bucket) {
+                this.labels = labels;
+                this.children = children;
+                this.top = top;
+                this.bucket = bucket;
+            }
+
+            Node child(char c) {
+                int i = Arrays.binarySearch(labels, c);
+                return i < 0 ? null : children[i];
+            }
+        }
+
+        // изменяемый узел, используемый при построении
+        private static class NodeBuilder {
+            final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+            final TreeSet<Integer> own = new TreeSet<>();       // подсказки, ключ которых заканчивается в узле
+            final List<Long> bucket = new ArrayList<>();
+        }
+
+        static Trie build(List<Suggestion> list) {
+            List<Suggestion> sorted = new ArrayList<>(list);
+            sorted.sort(Comparator.comparingLong((Suggestion s) -> s.weight).reversed().thenComparing(s -> s.text));
+            Suggestion[] suggestions = sorted.toArray(new Suggestion[0]);
+            String[] keys = new String[suggestions.length];
+
+            NodeBuilder root = new NodeBuilder();
+            for (int i = 0; i < suggestions.length; i++) {
+                keys[i] = String.join(" ", SearchNormalizer.tokenize(suggestions[i].text));
+                // ключ вставляется с начала каждого слова, чтобы подсказка находилась и по второму, третьему слову
+                for (int start = 0; start < keys[i].length(); start = keys[i].indexOf(' ', start) + 1) {
+                    insert(root, keys[i], start, i);
+                    if (keys[i].indexOf(' ', start) < 0) break;
+                }
+            }
+            return new Trie(suggestions, keys, freeze(root, 0));
+        }
+
+        private static void insert(NodeBuilder node, String key, int start, int suggestion) {
+            int end = Math.min(key.length(), start + MAX_DEPTH);
+            for (int i = start; i < end; i++)
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new NodeBuilder());
+            if (end - start == MAX_DEPTH) node.bucket.add((long) suggestion << 32 | start);
+            else node.own.add(suggestion);
+        }
+
+        private static Node freeze(NodeBuilder builder, int depth) {
+            TreeSet<Integer> top = new TreeSet<>(builder.own);
+            for (long entry : builder.bucket) top.add((int) (entry >>> 32));
+
+            char[] labels = new char[builder.children.size()];
+            Node[] children = new Node[labels.length];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder> entry : builder.children.entrySet()) {
+                labels[i] = entry.getKey();
+                children[i] = freeze(entry.getValue(), depth + 1);
+                for (int suggestion : children[i].top) top.add(suggestion);
+                i++;
+            }
+
+            long[] bucket = depth == MAX_DEPTH ? builder.bucket.stream().mapToLong(Long::longValue).toArray() : null;
+            return new Node(labels, children, top.stream().limit(MAX_SUGGESTIONS).mapToInt(Integer::intValue).toArray(), bucket);
+        }
+
+        List<Suggestion> find(String key, int limit) {
+            Node node = root;
+            int depth = Math.min(key.length(), MAX_DEPTH);
+            for (int i = 0; i < depth && node != null; i++) node = node.child(key.charAt(i));
+            if (node == null) return Collections.emptyList();
+
+            List<Suggestion> found = new ArrayList<>(limit);
+            if (key.length() <= MAX_DEPTH) {
+                for (int i = 0; i < node.top.length && i < limit; i++) found.add(suggestions[node.top[i]]);
+                return found;
+            }
+
+            // префикс длиннее дерева: проверяется продолжение ключа каждой подсказки узла
+            TreeSet<Integer> matched = new TreeSet<>();
+            for (long entry : node.bucket) {
+                int suggestion = (int) (entry >>> 32);
+                if (keys[suggestion].startsWith(key, (int) entry)) matched.add(suggestion);
+            }
+            for (int suggestion : matched) {
+                if (found.size() == limit) break;
+                found.add(suggestions[suggestion]);
+            }
+            return found;
+        }
+    }
+}
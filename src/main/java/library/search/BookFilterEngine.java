@@ -0,0 +1,197 @@
+package library.search;
+
+import library.model.BookFilter;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Отбор книг по сочетанию условий фильтра (BookFilter) по индексам в памяти: ключевые слова - BookSearchIndex,
+ * жанр, автор, издательство и диапазоны года издания, рейтинга и количества страниц - FacetIndex.
+ *
+ * Перед выполнением составляется план: для каждого условия известно точное количество подходящих книг (оценка),
+ * условия выполняются от самого избирательного к наименее избирательному. Первое условие дает битовую карту книг,
+ * каждое следующее сужает ее: пересечением со своей битовой картой, а когда отобранных книг осталось мало
+ * (в CHECK_RATIO раз меньше каталога) - проверкой значения каждой отобранной книги, без построения битовой карты условия.
+ * Если книг не осталось, остальные условия не выполняются. Выбранный план с временем каждого шага возвращается
+ * вместе с результатом - для диагностики.
+ */
+@Component
+public class BookFilterEngine {
+    // во сколько раз отобранных книг должно быть меньше, чем книг каталога, чтобы условие проверялось по каждой книге
+    static final int CHECK_RATIO = 64;
+
+    private final BookSearchIndex searchIndex;
+    private final FacetIndex facetIndex;
+
+    public BookFilterEngine(BookSearchIndex searchIndex, FacetIndex facetIndex) {
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+    }
+
+    // способ выполнения шага плана: битовая карта условия (первый шаг), пересечение с ней, проверка каждой книги
+    public enum Access {
+        INDEX, BITMAP, CHECK
+    }
+
+    // шаг плана: условие, способ выполнения, оценка (книг, подходящих под условие), книг после шага, время в микросекундах
+    @Getter
+    public static class Step {
+        private final String predicate;
+        private final Access access;
+        private final int estimate;
+        private final int rows;
+        private final long micros;
+
+        Step(String predicate, Access access, int estimate, int rows, long micros) {
+            this.predicate = predicate;
+            this.access = access;
+            this.estimate = estimate;
+            this.rows = rows;
+            this.micros = micros;
+        }
+    }
+
+    // выполненный план: шаги в порядке выполнения, количество книг каталога и общее время в микросекундах
+    @Getter
+    public static class Plan {
+        private final List<Step> steps;
+        private final int catalogSize;
+        private final long micros;
+
+        Plan(List<Step> steps, int catalogSize, long micros) {
+            this.steps = steps;
+            this.catalogSize = catalogSize;
+            this.micros = micros;
+        }
+    }
+
+    // отобранные книги (битовая карта по id книги) и план, по которому они отобраны
+    @Getter
+    public static class Result {
+        private final BitSet books;
+        private final Plan plan;
+
+        Result(BitSet books, Plan plan) {
+            this.books = books;
+            this.plan = plan;
+        }
+    }
+
+    // условие фильтра: описание для плана, оценка, его битовая карта и проверка одной книги
+    private abstract static class Predicate {
+        final String description;
+        final int estimate;
+
+        Predicate(String description, int estimate) {
+            this.description = description;
+            this.estimate = estimate;
+        }
+
+        abstract BitSet books();
+
+        // условие можно проверить для отдельной книги (иначе - только битовой картой)
+        boolean checkable() {
+            return true;
+        }
+
+        abstract boolean matches(int bookId);
+    }
+
+    // книги, подходящие под все условия фильтра (весь каталог, если условий нет)
+    public Result filter(BookFilter filter) {
+        long started = System.nanoTime();
+        // ключевые слова ищутся заранее, вне блокировки FacetIndex: их битовая карта - и оценка, и результат условия
+        BitSet byKeywords = filter.hasKeywords() ? searchIndex.findAll(filter.getKeywords()) : null;
+
+        return facetIndex.read(() -> {
+            List<Predicate> predicates = predicates(filter, byKeywords);
+            predicates.sort(Comparator.comparingInt(p -> p.estimate));
+            int catalogSize = facetIndex.size();
+
+            List<Step> steps = new ArrayList<>();
+            BitSet books = null;
+            for (Predicate predicate : predicates) {
+                long stepStarted = System.nanoTime();
+                Access access;
+                if (books == null) {
+                    access = Access.INDEX;
+                    books = predicate.books();
+                } else if ((long) books.cardinality() * CHECK_RATIO < catalogSize && predicate.checkable()) {
+                    access = Access.CHECK;
+                    for (int id = books.nextSetBit(0); id >= 0; id = books.nextSetBit(id + 1))
+                        if (!predicate.matches(id)) books.clear(id);
+                } else {
+                    access = Access.BITMAP;
+                    books.and(predicate.books());
+                }
+                steps.add(new Step(predicate.description, access, predicate.estimate, books.cardinality(),
+                        (System.nanoTime() - stepStarted) / 1000));
+                if (books.isEmpty()) break;
+            }
+            if (books == null) {
+                books = facetIndex.getAll();
+                steps.add(new Step("all books", Access.INDEX, catalogSize, books.cardinality(), 0));
+            }
+            return new Result(books, new Plan(steps, catalogSize, (System.nanoTime() - started) / 1000));
+        });
+    }
+
+    private List<Predicate> predicates(BookFilter filter, BitSet byKeywords) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (byKeywords != null) {
+            predicates.add(new Predicate("keywords '" + filter.getKeywords().trim() + "'", byKeywords.cardinality()) {
+                BitSet books() {
+                    return byKeywords;
+                }
+
+                boolean checkable() {
+                    return false;
+                }
+
+                boolean matches(int bookId) {
+                    return byKeywords.get(bookId);
+                }
+            });
+        }
+        addValue(predicates, FacetIndex.Dimension.GENRE, filter.getGenreId());
+        addValue(predicates, FacetIndex.Dimension.AUTHOR, filter.getAuthorId());
+        addValue(predicates, FacetIndex.Dimension.PUBLISHER, filter.getPublisherId());
+        addRange(predicates, FacetIndex.Range.YEAR, filter.getYearFrom(), filter.getYearTo());
+        addRange(predicates, FacetIndex.Range.RATING, filter.getMinRating(), null);
+        addRange(predicates, FacetIndex.Range.PAGES, filter.getPagesFrom(), filter.getPagesTo());
+        return predicates;
+    }
+
+    private void addValue(List<Predicate> predicates, FacetIndex.Dimension dimension, Long value) {
+        if (value == null) return;
+        String description = dimension.name().toLowerCase() + " = " + value;
+        predicates.add(new Predicate(description, facetIndex.cardinality(dimension, value)) {
+            BitSet books() {
+                return facetIndex.getBooks(dimension, value);
+            }
+
+            boolean matches(int bookId) {
+                return facetIndex.matches(bookId, dimension, value);
+            }
+        });
+    }
+
+    private void addRange(List<Predicate> predicates, FacetIndex.Range range, Integer from, Integer to) {
+        if (from == null && to == null) return;
+        String description = range.name().toLowerCase() + " " + (from == null ? "" : from) + ".." + (to == null ? "" : to);
+        predicates.add(new Predicate(description, facetIndex.cardinality(range, from, to)) {
+            BitSet books() {
+                return facetIndex.getBooks(range, from, to);
+            }
+
+            boolean matches(int bookId) {
+                return facetIndex.matches(bookId, range, from, to);
+            }
+        });
+    }
+}
@@ -0,0 +1,292 @@
+package library.search;
+
+import library.repository.BookEntityRepo;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс каталога в памяти для поиска по ключевым словам без обращения к БД.
+ * Индексируются название книги, фио автора, название издательства и жанра (на обоих языках).
+ * Для каждого слова хранится множество книг, в которых оно встречается (битовая карта по id книги), для каждой
+ * книги - частоты ее слов. Индекс строится при запуске приложения и обновляется при сохранении и удалении книг.
+ *
+ * Запрос: слова через пробел должны встретиться все (AND), группы слов, разделенные OR (ИЛИ), объединяются.
+ * Слово запроса совпадает со всеми словами индекса, которые с него начинаются (ввод части слова тоже находит книгу).
+ * Слово, которого нет в индексе (опечатка), заменяется похожими по триграммам словами из названий и фио авторов
+ * (TrigramIndex); для такого запроса можно получить исправленный вариант ("возможно, вы имели в виду").
+ * Найденные книги упорядочиваются по BM25.
+ */
+@Component
+public class BookSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    // параметры BM25: насыщение частоты слова и влияние длины документа
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    // вес совпадения по началу слова относительно полного совпадения
+    static final double PREFIX_MATCH_WEIGHT = 0.5;
+    // сколько похожих слов подставляется вместо слова запроса, которого нет в индексе
+    static final int FUZZY_EXPANSIONS = 3;
+
+    private final BookEntityRepo bookRepo;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, BitSet> postings = new TreeMap<>();       // слово -> id книг, в которых оно встречается
+    private final Map<Integer, Document> documents = new HashMap<>();      // id книги -> ее слова
+    private final TrigramIndex trigramIndex = new TrigramIndex();           // слова названий и фио авторов
+    private long totalLength;                                               // суммарное количество слов всех книг
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookEntityRepo bookRepo) {
+        this.bookRepo = bookRepo;
+    }
+
+    // слова одной книги с частотами
+    private static class Document {
+        final Map<String, Integer> termFrequencies = new HashMap<>();
+        final Set<String> trigramWords = new HashSet<>();      // слова названия и фио автора (в триграммном индексе)
+        int length;
+    }
+
+    // слово запроса для ранжирования: совпадает со словами индекса, начинающимися с него (prefix), или только с самим собой
+    private static class QueryTerm {
+        final String text;
+        final double weight;
+        final boolean prefix;
+
+        QueryTerm(String text, double weight, boolean prefix) {
+            this.text = text;
+            this.weight = weight;
+            this.prefix = prefix;
+        }
+    }
+
+    // страница результатов поиска: id книг в порядке релевантности и общее количество найденных книг
+    @Getter
+    public static class Result {
+        private final List<Long> ids;
+        private final int total;
+
+        Result(List<Long> ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        List<Object[]> rows = bookRepo.findSearchRows();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            trigramIndex.clear();
+            totalLength = 0;
+            for (Object[] row : rows) add(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Search index built: {} books, {} terms in {} ms", rows.size(), postings.size(), System.currentTimeMillis() - started);
+    }
+
+    // индекс построен (до этого поиск выполняется средствами БД)
+    public boolean isReady() {
+        return ready;
+    }
+
+    // переиндексировать книгу (после ее сохранения)
+    public void update(long bookId) {
+        List<Object[]> rows = bookRepo.findSearchRow(bookId);
+        lock.writeLock().lock();
+        try {
+            remove((int) bookId);
+            for (Object[] row : rows) add(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // убрать книгу из индекса (после ее удаления)
+    public void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            remove((int) bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // строка запроса findSearchRows: id книги и индексируемые поля (1 - название, 2 и 3 - фио автора, далее - прочие)
+    private void add(Object[] row) {
+        int id = ((Number) row[0]).intValue();
+        Document document = new Document();
+        for (int i = 1; i < row.length; i++) {
+            if (row[i] == null) continue;
+            for (String token : SearchNormalizer.tokenize(row[i].toString())) {
+                document.termFrequencies.merge(token, 1, Integer::sum);
+                document.length++;
+                if (i <= 3) document.trigramWords.add(token);
+            }
+        }
+        document.trigramWords.forEach(trigramIndex::add);
+        documents.put(id, document);
+        totalLength += document.length;
+        for (String term : document.termFrequencies.keySet())
+            postings.computeIfAbsent(term, t -> new BitSet()).set(id);
+    }
+
+    private void remove(int id) {
+        Document document = documents.remove(id);
+        if (document == null) return;
+        totalLength -= document.length;
+        document.trigramWords.forEach(trigramIndex::remove);
+        for (String term : document.termFrequencies.keySet()) {
+            BitSet docs = postings.get(term);
+            docs.clear(id);
+            if (docs.isEmpty()) postings.remove(term);
+        }
+    }
+
+    // limit найденных книг, начиная с offset, в порядке убывания релевантности
+    public Result search(String query, long offset, int limit) {
+        return search(query, null, offset, limit);
+    }
+
+    // то же среди книг within (уже отобранных другими фильтрами; null - среди всех книг)
+    public Result search(String query, BitSet within, long offset, int limit) {
+        List<List<String>> groups = parse(query);
+        lock.readLock().lock();
+        try {
+            List<QueryTerm> queryTerms = new ArrayList<>();
+            BitSet found = match(groups, queryTerms);
+            if (within != null) found.and(within);
+
+            double avgLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1))
+                scores.put(id, score(documents.get(id), queryTerms, avgLength));
+            List<Integer> ranked = new ArrayList<>(scores.keySet());
+            ranked.sort(Comparator.comparing((Integer id) -> scores.get(id)).reversed().thenComparing(id -> id));
+
+            List<Long> ids = ranked.stream().skip(offset).limit(limit).map(Integer::longValue).collect(Collectors.toList());
+            return new Result(ids, ranked.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // все найденные книги (битовая карта по id книги) - для подсчета фасетов и сочетания с другими фильтрами
+    public BitSet findAll(String query) {
+        List<List<String>> groups = parse(query);
+        lock.readLock().lock();
+        try {
+            return match(groups, new ArrayList<>());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // книги, подходящие под запрос; в queryTerms добавляются слова, по которым они найдены (для ранжирования)
+    private BitSet match(List<List<String>> groups, List<QueryTerm> queryTerms) {
+        BitSet found = new BitSet();
+        for (List<String> group : groups) {
+            BitSet groupDocs = null;
+            for (String term : group) {
+                BitSet termDocs = prefixPostings(term);
+                if (!termDocs.isEmpty()) {
+                    queryTerms.add(new QueryTerm(term, 1, true));
+                } else {
+                    // слова нет в индексе - вероятно, опечатка: ищутся книги с похожими словами
+                    for (TrigramIndex.Similar similar : trigramIndex.similar(term, FUZZY_EXPANSIONS)) {
+                        termDocs.or(postings.get(similar.getWord()));
+                        queryTerms.add(new QueryTerm(similar.getWord(), similar.getSimilarity(), false));
+                    }
+                }
+                if (groupDocs == null) groupDocs = termDocs;
+                else groupDocs.and(termDocs);
+            }
+            if (groupDocs != null) found.or(groupDocs);
+        }
+        return found;
+    }
+
+    // исправленный запрос: слова, которых нет в индексе, заменены самыми похожими словами названий и фио авторов
+    // (null, если исправлять нечего)
+    public String suggest(String query) {
+        List<List<String>> groups = parse(query);
+        boolean corrected = false;
+        List<String> suggestion = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (List<String> group : groups) {
+                List<String> words = new ArrayList<>();
+                for (String term : group) {
+                    List<TrigramIndex.Similar> similar = prefixPostings(term).isEmpty()
+                            ? trigramIndex.similar(term, 1) : Collections.emptyList();
+                    if (similar.isEmpty()) words.add(term);
+                    else {
+                        words.add(similar.get(0).getWord());
+                        corrected = true;
+                    }
+                }
+                suggestion.add(String.join(" ", words));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return corrected ? String.join(" or ", suggestion) : null;
+    }
+
+    // группы слов запроса: внутри группы слова объединяются по AND, группы - по OR
+    static List<List<String>> parse(String query) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equalsIgnoreCase("or") || word.equalsIgnoreCase("или") || word.equals("|")) {
+                if (!group.isEmpty()) groups.add(group);
+                group = new ArrayList<>();
+            } else {
+                group.addAll(SearchNormalizer.tokenize(word));
+            }
+        }
+        if (!group.isEmpty()) groups.add(group);
+        return groups;
+    }
+
+    // книги, содержащие слово, начинающееся с term
+    private BitSet prefixPostings(String term) {
+        BitSet docs = new BitSet();
+        for (BitSet termDocs : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) docs.or(termDocs);
+        return docs;
+    }
+
+    // BM25: сумма по словам запроса idf(слово) * насыщенная частота слова в книге с поправкой на длину книги
+    private double score(Document document, List<QueryTerm> queryTerms, double avgLength) {
+        double score = 0;
+        double lengthNorm = K1 * (1 - B + B * document.length / avgLength);
+        for (Map.Entry<String, Integer> entry : document.termFrequencies.entrySet()) {
+            String word = entry.getKey();
+            for (QueryTerm term : queryTerms) {
+                boolean exact = word.equals(term.text);
+                if (!exact && !(term.prefix && word.startsWith(term.text))) continue;
+                int df = postings.get(word).cardinality();
+                double idf = Math.log(1 + (documents.size() - df + 0.5) / (df + 0.5));
+                double tf = entry.getValue();
+                double weight = term.weight * (exact ? 1 : PREFIX_MATCH_WEIGHT);
+                score += weight * idf * tf * (K1 + 1) / (tf + lengthNorm);
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,425 @@
+package library.search;
+
+import library.repository.BookEntityRepo;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Фасеты каталога в памяти: жанр, автор, издательство, десятилетие издания и рейтинг (количество звезд) каждой книги.
+ * Для каждого значения фасета хранится битовая карта книг (по id книги) - для сочетания с результатами поиска,
+ * и для каждой книги - номер ее значения (столбцы по id книги), поэтому количество найденных книг по всем значениям
+ * всех фасетов считается за один проход по найденным книгам, без запросов GROUP BY.
+ * Для отбора по диапазонам (год издания, количество страниц, рейтинг) книги хранятся по значениям в порядке
+ * возрастания (TreeMap) вместе с их количеством - количество книг в диапазоне считается без обхода самих книг.
+ * Индекс строится при запуске приложения и обновляется при сохранении и удалении книг.
+ */
+@Component
+public class FacetIndex {
+    private static final Logger log = LoggerFactory.getLogger(FacetIndex.class);
+
+    // максимальное количество значений фасета в результате (самые частые)
+    static final int MAX_FACET_VALUES = 20;
+
+    public enum Dimension {
+        GENRE, AUTHOR, PUBLISHER, DECADE, RATING
+    }
+
+    // числовые поля книг для отбора по диапазону
+    public enum Range {
+        YEAR, PAGES, RATING
+    }
+
+    private final BookEntityRepo bookRepo;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EnumMap<Dimension, Values> dimensions = new EnumMap<>(Dimension.class);
+    private final EnumMap<Range, RangeColumn> ranges = new EnumMap<>(Range.class);
+    private final BitSet all = new BitSet();
+    private volatile boolean ready;
+
+    public FacetIndex(BookEntityRepo bookRepo) {
+        this.bookRepo = bookRepo;
+        for (Dimension dimension : Dimension.values()) dimensions.put(dimension, new Values());
+        for (Range range : Range.values()) ranges.put(range, new RangeColumn());
+    }
+
+    // значения одного фасета: значения пронумерованы подряд (код), для каждого - подписи и книги;
+    // byBook - код значения каждой книги (-1 - книги нет)
+    private static class Values {
+        final Map<Long, Integer> codes = new HashMap<>();
+        final List<Long> values = new ArrayList<>();
+        final List<String> ruLabels = new ArrayList<>();
+        final List<String> enLabels = new ArrayList<>();
+        final List<BitSet> books = new ArrayList<>();
+        int[] byBook = new int[0];
+
+        void set(int bookId, long value, String ruLabel, String enLabel) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+                ruLabels.add(ruLabel);
+                enLabels.add(enLabel);
+                books.add(new BitSet());
+            } else {
+                // подписи (например, название жанра) могли измениться
+                ruLabels.set(code, ruLabel);
+                enLabels.set(code, enLabel);
+            }
+            if (bookId >= byBook.length) {
+                int oldLength = byBook.length;
+                byBook = Arrays.copyOf(byBook, Math.max(bookId + 1, oldLength * 2));
+                Arrays.fill(byBook, oldLength, byBook.length, -1);
+            }
+            byBook[bookId] = code;
+            books.get(code).set(bookId);
+        }
+
+        void clear(int bookId) {
+            if (bookId >= byBook.length || byBook[bookId] < 0) return;
+            books.get(byBook[bookId]).clear(bookId);
+            byBook[bookId] = -1;
+        }
+
+        int codeOf(int bookId) {
+            return bookId < byBook.length ? byBook[bookId] : -1;
+        }
+    }
+
+    // числовое поле: книги по значениям (в порядке возрастания) и значение каждой книги
+    private static class RangeColumn {
+        // книги с одним значением и их количество
+        static class Bucket {
+            final BitSet books = new BitSet();
+            int count;
+        }
+
+        final TreeMap<Integer, Bucket> buckets = new TreeMap<>();
+        final Map<Integer, Integer> byBook = new HashMap<>();
+
+        void set(int bookId, int value) {
+            Bucket bucket = buckets.computeIfAbsent(value, v -> new Bucket());
+            bucket.books.set(bookId);
+            bucket.count++;
+            byBook.put(bookId, value);
+        }
+
+        void clear(int bookId) {
+            Integer value = byBook.remove(bookId);
+            if (value == null) return;
+            Bucket bucket = buckets.get(value);
+            bucket.books.clear(bookId);
+            if (--bucket.count == 0) buckets.remove(value);
+        }
+
+        // значения от from до to включительно (null - без ограничения)
+        NavigableMap<Integer, Bucket> range(Integer from, Integer to) {
+            if (from != null && to != null && from > to) return Collections.emptyNavigableMap();
+            NavigableMap<Integer, Bucket> range = buckets;
+            if (from != null) range = range.tailMap(from, true);
+            if (to != null) range = range.headMap(to, true);
+            return range;
+        }
+    }
+
+    // значение фасета с количеством найденных книг
+    @Getter
+    public static class Facet {
+        private final long value;
+        private final String ruLabel;
+        private final String enLabel;
+        private final int count;
+
+        Facet(long value, String ruLabel, String enLabel, int count) {
+            this.value = value;
+            this.ruLabel = ruLabel;
+            this.enLabel = enLabel;
+            this.count = count;
+        }
+
+        public String getLocalizedLabel() {
+            Locale locale = LocaleContextHolder.getLocale();
+            if ("ru".equals(locale.toString())) return ruLabel;
+            else return enLabel;
+        }
+    }
+
+    // количество найденных книг по значениям всех фасетов
+    @Getter
+    public static class Facets {
+        private final List<Facet> genres;
+        private final List<Facet> authors;
+        private final List<Facet> publishers;
+        private final List<Facet> decades;
+        private final List<Facet> ratings;
+
+        Facets(List<Facet> genres, List<Facet> authors, List<Facet> publishers, List<Facet> decades, List<Facet> ratings) {
+            this.genres = genres;
+            this.authors = authors;
+            this.publishers = publishers;
+            this.decades = decades;
+            this.ratings = ratings;
+        }
+
+        // количество книг жанра среди найденных (0, если их нет)
+        public int getGenreCount(long genreId) {
+            for (Facet genre : genres) if (genre.value == genreId) return genre.count;
+            return 0;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        List<Object[]> rows = bookRepo.findFacetRows();
+        lock.writeLock().lock();
+        try {
+            for (Dimension dimension : Dimension.values()) dimensions.put(dimension, new Values());
+            for (Range range : Range.values()) ranges.put(range, new RangeColumn());
+            all.clear();
+            for (Object[] row : rows) add(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Facet index built: {} books in {} ms", rows.size(), System.currentTimeMillis() - started);
+    }
+
+    // индекс построен
+    public boolean isReady() {
+        return ready;
+    }
+
+    // переиндексировать книгу (после ее сохранения или изменения рейтинга)
+    public void update(long bookId) {
+        List<Object[]> rows = bookRepo.findFacetRow(bookId);
+        lock.writeLock().lock();
+        try {
+            remove((int) bookId);
+            for (Object[] row : rows) add(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // убрать книгу из индекса (после ее удаления)
+    public void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            remove((int) bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // выполнить action под блокировкой чтения: несколько обращений к индексу видят его в одном и том же состоянии
+    public <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // количество книг каталога
+    public int size() {
+        return read(all::cardinality);
+    }
+
+    // все книги каталога
+    public BitSet getAll() {
+        lock.readLock().lock();
+        try {
+            return (BitSet) all.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // книги со значением value фасета dimension (пустое множество, если таких нет)
+    public BitSet getBooks(Dimension dimension, long value) {
+        lock.readLock().lock();
+        try {
+            Values values = dimensions.get(dimension);
+            Integer code = values.codes.get(value);
+            return code == null ? new BitSet() : (BitSet) values.books.get(code).clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // количество книг со значением value фасета dimension
+    public int cardinality(Dimension dimension, long value) {
+        return read(() -> {
+            Values values = dimensions.get(dimension);
+            Integer code = values.codes.get(value);
+            return code == null ? 0 : values.books.get(code).cardinality();
+        });
+    }
+
+    // у книги значение value фасета dimension
+    public boolean matches(int bookId, Dimension dimension, long value) {
+        return read(() -> {
+            Values values = dimensions.get(dimension);
+            int code = values.codeOf(bookId);
+            return code >= 0 && values.values.get(code) == value;
+        });
+    }
+
+    // количество книг, значение поля range которых от from до to включительно (null - без ограничения)
+    public int cardinality(Range range, Integer from, Integer to) {
+        return read(() -> {
+            int count = 0;
+            for (RangeColumn.Bucket bucket : ranges.get(range).range(from, to).values()) count += bucket.count;
+            return count;
+        });
+    }
+
+    // книги, значение поля range которых от from до to включительно
+    public BitSet getBooks(Range range, Integer from, Integer to) {
+        return read(() -> {
+            BitSet books = new BitSet();
+            for (RangeColumn.Bucket bucket : ranges.get(range).range(from, to).values()) books.or(bucket.books);
+            return books;
+        });
+    }
+
+    // значение поля range книги от from до to включительно
+    public boolean matches(int bookId, Range range, Integer from, Integer to) {
+        return read(() -> {
+            Integer value = ranges.get(range).byBook.get(bookId);
+            return value != null && (from == null || value >= from) && (to == null || value <= to);
+        });
+    }
+
+    // limit книг из books, начиная с offset, по убыванию рейтинга (книги с одинаковым рейтингом - сначала новые):
+    // книги берутся из корзин рейтинга от большего к меньшему, пропускаемые корзины не обходятся
+    public List<Long> rankByRating(BitSet books, long offset, int limit) {
+        return read(() -> {
+            List<Long> ids = new ArrayList<>(limit);
+            long skip = offset;
+            for (RangeColumn.Bucket bucket : ranges.get(Range.RATING).buckets.descendingMap().values()) {
+                BitSet found = (BitSet) bucket.books.clone();
+                found.and(books);
+                int count = found.cardinality();
+                if (skip >= count) {
+                    skip -= count;
+                    continue;
+                }
+                for (int id = found.length() - 1; id >= 0 && ids.size() < limit; id = found.previousSetBit(id - 1)) {
+                    if (skip > 0) skip--;
+                    else ids.add((long) id);
+                }
+                if (ids.size() == limit) break;
+            }
+            return ids;
+        });
+    }
+
+    // количество книг books по значениям всех фасетов - один проход по книгам
+    public Facets count(BitSet books) {
+        return count(books, Collections.emptyMap());
+    }
+
+    // количество книг books по значениям всех фасетов, когда в части фасетов выбраны значения selected:
+    // книги считаются только с выбранными значениями, но значения выбранного фасета считаются без учета его
+    // собственного выбора (сколько книг будет найдено при выборе другого значения) - тоже за один проход по книгам
+    public Facets count(BitSet books, Map<Dimension, Long> selected) {
+        lock.readLock().lock();
+        try {
+            Dimension[] dims = Dimension.values();
+            Values[] values = new Values[dims.length];
+            int[][] counts = new int[dims.length][];
+            int[] selectedCodes = new int[dims.length];     // -1 - значение не выбрано, -2 - выбранного значения нет ни у одной книги
+            for (int d = 0; d < dims.length; d++) {
+                values[d] = dimensions.get(dims[d]);
+                counts[d] = new int[values[d].values.size()];
+                Long value = selected.get(dims[d]);
+                selectedCodes[d] = value == null ? -1 : values[d].codes.getOrDefault(value, -2);
+            }
+            for (int id = books.nextSetBit(0); id >= 0; id = books.nextSetBit(id + 1)) {
+                // фасеты, выбранному значению которых книга не соответствует
+                int mismatches = 0;
+                int mismatched = -1;
+                for (int d = 0; d < dims.length; d++) {
+                    if (selectedCodes[d] != -1 && values[d].codeOf(id) != selectedCodes[d]) {
+                        mismatches++;
+                        mismatched = d;
+                    }
+                }
+                if (mismatches > 1) continue;
+                for (int d = 0; d < dims.length; d++) {
+                    if (mismatches == 1 && d != mismatched) continue;
+                    int code = values[d].codeOf(id);
+                    if (code >= 0) counts[d][code]++;
+                }
+            }
+
+            Comparator<Facet> byCount = Comparator.comparingInt(Facet::getCount).reversed().thenComparing(Facet::getRuLabel);
+            return new Facets(
+                    facets(values[Dimension.GENRE.ordinal()], counts[Dimension.GENRE.ordinal()], byCount),
+                    facets(values[Dimension.AUTHOR.ordinal()], counts[Dimension.AUTHOR.ordinal()], byCount),
+                    facets(values[Dimension.PUBLISHER.ordinal()], counts[Dimension.PUBLISHER.ordinal()], byCount),
+                    facets(values[Dimension.DECADE.ordinal()], counts[Dimension.DECADE.ordinal()], Comparator.comparingLong(Facet::getValue)),
+                    facets(values[Dimension.RATING.ordinal()], counts[Dimension.RATING.ordinal()], Comparator.comparingLong(Facet::getValue).reversed()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Facet> facets(Values values, int[] counts, Comparator<Facet> order) {
+        List<Facet> facets = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0)
+                facets.add(new Facet(values.values.get(code), values.ruLabels.get(code), values.enLabels.get(code), counts[code]));
+        }
+        facets.sort(order);
+        return facets.size() > MAX_FACET_VALUES ? new ArrayList<>(facets.subList(0, MAX_FACET_VALUES)) : facets;
+    }
+
+    // строка запроса findFacetRows: id книги, жанр (id, ru, en), автор (id, ru, en), издательство (id, ru, en),
+    // год издания, рейтинг, количество страниц
+    private void add(Object[] row) {
+        int id = ((Number) row[0]).intValue();
+        all.set(id);
+        if (row[1] != null)
+            dimensions.get(Dimension.GENRE).set(id, ((Number) row[1]).longValue(), (String) row[2], (String) row[3]);
+        if (row[4] != null)
+            dimensions.get(Dimension.AUTHOR).set(id, ((Number) row[4]).longValue(), (String) row[5], (String) row[6]);
+        if (row[7] != null)
+            dimensions.get(Dimension.PUBLISHER).set(id, ((Number) row[7]).longValue(), (String) row[8], (String) row[9]);
+        int year = ((Number) row[10]).intValue();
+        long decade = year / 10 * 10;
+        dimensions.get(Dimension.DECADE).set(id, decade, decade + "-е", decade + "s");
+        int stars = ((Number) row[11]).intValue();
+        dimensions.get(Dimension.RATING).set(id, stars, ratingLabel(stars, "Без оценки"), ratingLabel(stars, "Not rated"));
+        ranges.get(Range.YEAR).set(id, year);
+        ranges.get(Range.RATING).set(id, stars);
+        ranges.get(Range.PAGES).set(id, ((Number) row[12]).intValue());
+    }
+
+    private static String ratingLabel(int stars, String notRated) {
+        if (stars <= 0) return notRated;
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < 5; i++) label.append(i < stars ? '★' : '☆');
+        return label.toString();
+    }
+
+    private void remove(int id) {
+        all.clear(id);
+        for (Values values : dimensions.values()) values.clear(id);
+        for (RangeColumn column : ranges.values()) column.clear(id);
+    }
+}
@@ -0,0 +1,30 @@
+package library.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Приведение текста к виду, в котором он сравнивается при поиске: нижний регистр, ё -> е, слова без знаков препинания
+public class SearchNormalizer {
+
+    public static String normalize(String text) {
+        if (text == null) return "";
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    // слова текста (последовательности букв и цифр) в нормализованном виде
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) start = i;
+            if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
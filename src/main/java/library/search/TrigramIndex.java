@@ -0,0 +1,84 @@
+package library.search;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Триграммный индекс слов каталога (названий книг и фио авторов) для поиска с опечатками.
+ * Сходство слов - доля общих триграмм (коэффициент Жаккара по множествам триграмм, как в pg_trgm):
+ * "достоевкий" и "достоевский" совпадают по большинству триграмм, хотя ни одно не является началом другого.
+ * Не потокобезопасен: доступ синхронизирует владелец (BookSearchIndex).
+ */
+class TrigramIndex {
+    // минимальное сходство, при котором слово считается похожим
+    static final double MIN_SIMILARITY = 0.35;
+
+    private final Map<String, Set<String>> wordsByTrigram = new HashMap<>();
+    private final Map<String, Integer> wordCounts = new HashMap<>();    // слово -> в скольких книгах оно встречается
+
+    @Getter
+    static class Similar {
+        private final String word;
+        private final double similarity;
+
+        Similar(String word, double similarity) {
+            this.word = word;
+            this.similarity = similarity;
+        }
+    }
+
+    void add(String word) {
+        if (wordCounts.merge(word, 1, Integer::sum) > 1) return;
+        for (String trigram : trigrams(word))
+            wordsByTrigram.computeIfAbsent(trigram, t -> new HashSet<>()).add(word);
+    }
+
+    void remove(String word) {
+        Integer count = wordCounts.get(word);
+        if (count == null) return;
+        if (count > 1) {
+            wordCounts.put(word, count - 1);
+            return;
+        }
+        wordCounts.remove(word);
+        for (String trigram : trigrams(word)) {
+            Set<String> words = wordsByTrigram.get(trigram);
+            words.remove(word);
+            if (words.isEmpty()) wordsByTrigram.remove(trigram);
+        }
+    }
+
+    void clear() {
+        wordsByTrigram.clear();
+        wordCounts.clear();
+    }
+
+    // не более limit слов, похожих на word, в порядке убывания сходства (при равном сходстве - более частые)
+    List<Similar> similar(String word, int limit) {
+        Set<String> trigrams = trigrams(word);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : trigrams) {
+            for (String candidate : wordsByTrigram.getOrDefault(trigram, Collections.emptySet()))
+                shared.merge(candidate, 1, Integer::sum);
+        }
+
+        List<Similar> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            int common = entry.getValue();
+            double similarity = (double) common / (trigrams.size() + trigrams(entry.getKey()).size() - common);
+            if (similarity >= MIN_SIMILARITY) result.add(new Similar(entry.getKey(), similarity));
+        }
+        result.sort(Comparator.comparingDouble(Similar::getSimilarity).reversed()
+                .thenComparing(s -> -wordCounts.get(s.getWord())));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // триграммы слова, дополненного пробелами (два в начале, один в конце), чтобы учитывались начало и конец слова
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) trigrams.add(padded.substring(i, i + 3));
+        return trigrams;
+    }
+}
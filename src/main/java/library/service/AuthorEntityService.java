@@ -1,8 +1,10 @@
 package library.service;
 
 import library.dao.AuthorEntityDao;
+import library.dao.GeneralDao;
 import library.domain.AuthorEntity;
 import library.repository.AuthorEntityRepo;
+import library.search.SearchNormalizer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.data.domain.Page;
@@ -38,13 +40,18 @@ public class AuthorEntityService implements AuthorEntityDao {
         authorRepo.delete(object);
     }
 
+    // поиск по началу фио (по индексу); если так ничего не найдено - по вхождению в любом месте (без индекса)
     @Override
     public List<AuthorEntity> search(String ... searchString) {
-        Locale locale = LocaleContextHolder.getLocale();
-        if ("en".equals(locale.toString()))
-            return authorRepo.findByEnFioContainingIgnoreCaseOrderByEnFio(searchString[0]);
-        else
-            return authorRepo.findByRuFioContainingIgnoreCaseOrderByRuFio(searchString[0]);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(LocaleContextHolder.getLocale().toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? authorRepo.findBySearchEnFioStartingWithOrderByEnFio(text)
+                        : authorRepo.findBySearchRuFioStartingWithOrderByRuFio(text),
+                () -> en
+                        ? authorRepo.findBySearchEnFioContainingOrderByEnFio(text)
+                        : authorRepo.findBySearchRuFioContainingOrderByRuFio(text));
     }
 
     @Override
@@ -59,15 +66,33 @@ public class AuthorEntityService implements AuthorEntityDao {
         return authorRepo.findAll(pageRequest);
     }
 
+    // постраничный поиск - так же: по началу, а если ничего не найдено - по вхождению
     @Override
     public Page<AuthorEntity> search(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString) {
         Locale locale = LocaleContextHolder.getLocale();
         Sort sort = Sort.by(sortDirection, sortField);
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
 
-        if ("en".equals(locale.toString()))
-            return authorRepo.findByEnFioContainingIgnoreCaseOrderByEnFio(searchString[0], pageRequest);
-        else
-            return authorRepo.findByRuFioContainingIgnoreCaseOrderByRuFio(searchString[0], pageRequest);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(locale.toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? authorRepo.existsBySearchEnFioStartingWith(text)
+                        : authorRepo.existsBySearchRuFioStartingWith(text),
+                () -> en
+                        ? authorRepo.findBySearchEnFioStartingWithOrderByEnFio(text, pageRequest)
+                        : authorRepo.findBySearchRuFioStartingWithOrderByRuFio(text, pageRequest),
+                () -> en
+                        ? authorRepo.findBySearchEnFioContainingOrderByEnFio(text, pageRequest)
+                        : authorRepo.findBySearchRuFioContainingOrderByRuFio(text, pageRequest));
+    }
+
+    // автор по фио на языке текущей локали, точно (без учета регистра и различия е/ё); null, если не найден
+    @Override
+    public AuthorEntity findByFio(String fio) {
+        String text = SearchNormalizer.normalize(fio);
+        return "en".equals(LocaleContextHolder.getLocale().toString())
+                ? authorRepo.findFirstBySearchEnFio(text)
+                : authorRepo.findFirstBySearchRuFio(text);
     }
 }
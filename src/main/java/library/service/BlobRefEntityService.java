@@ -0,0 +1,104 @@
+package library.service;
+
+import library.dao.BlobRefEntityDao;
+import library.domain.BlobRefEntity;
+import library.repository.BlobRefEntityRepo;
+import library.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Учет ссылок на объекты хранилища. Хранилище адресуется хэшем содержимого, поэтому одинаковые обложки и pdf
+ * (например, стандартная обложка no-cover.jpg) хранятся один раз, а каждая книга лишь добавляет на них ссылку.
+ * Объект удаляется из хранилища, когда на него не остается ни одной ссылки.
+ *
+ * Ссылки добавляются и убираются в транзакции вызывающего (сохранения или удаления книги): при ее откате счетчики
+ * не меняются. Объекты без ссылок удаляются только после завершения транзакции (collect) - в отдельной транзакции,
+ * которая блокирует счетчик объекта: пока файл удаляется, добавить на него ссылку нельзя, а добавившая ссылку после
+ * этого запись (store) видит, что файла нет, и записывает его заново. Объект, записанный в откаченной транзакции,
+ * тоже проверяется и удаляется, если ссылок на него нет.
+ */
+@Service
+public class BlobRefEntityService implements BlobRefEntityDao {
+    private static final Logger log = LoggerFactory.getLogger(BlobRefEntityService.class);
+
+    @Autowired
+    BlobRefEntityRepo blobRefRepo;
+    @Autowired
+    BlobStore blobStore;
+    // сборка выполняется после завершения транзакции вызывающего - всегда в собственной транзакции
+    private final TransactionTemplate collectTransaction;
+
+    public BlobRefEntityService(PlatformTransactionManager transactionManager) {
+        collectTransaction = new TransactionTemplate(transactionManager);
+        collectTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public String store(InputStreamSource source) {
+        try {
+            String hash;
+            try (InputStream in = source.getInputStream()) {
+                hash = blobStore.put(in);
+            }
+            acquire(hash);
+            // если транзакция будет откачена, ссылки на записанный объект может не остаться
+            TransactionHooks.afterRollback(() -> collect(hash));
+            // объект мог быть удален сборкой мусора между записью и добавлением ссылки - тогда записываем его заново
+            if (!blobStore.exists(hash)) {
+                try (InputStream in = source.getInputStream()) {
+                    blobStore.put(in);
+                }
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void acquire(String hash) {
+        blobRefRepo.increment(hash);
+    }
+
+    @Override
+    public void release(String hash) {
+        if (hash == null) return;
+        blobRefRepo.decrement(hash);
+        TransactionHooks.afterCommit(() -> collect(hash));
+    }
+
+    // удаляет объект, если на него не осталось ссылок; счетчик заблокирован, пока файл не удален
+    void collect(String hash) {
+        try {
+            collectTransaction.executeWithoutResult(status -> {
+                Integer refCount = blobRefRepo.lockRefCount(hash);
+                if (refCount != null && refCount > 0) return;
+                if (refCount != null) blobRefRepo.deleteIfUnreferenced(hash);
+                try {
+                    blobStore.delete(hash);
+                } catch (IOException e) {
+                    log.warn("Unable to delete unreferenced blob {}", hash, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // объект без ссылок остается в хранилище - это не мешает работе, только занимает место
+            log.warn("Unable to collect blob {}", hash, e);
+        }
+    }
+
+    @Override
+    public int getRefCount(String hash) {
+        return blobRefRepo.findById(hash).map(BlobRefEntity::getRefCount).orElse(0);
+    }
+}
@@ -0,0 +1,67 @@
+package library.service;
+
+import library.dao.BookContentMetaEntityDao;
+import library.domain.BookContentMetaEntity;
+import library.repository.BookContentMetaEntityRepo;
+import library.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+@Service
+public class BookContentMetaEntityService implements BookContentMetaEntityDao {
+    @Autowired
+    BookContentMetaEntityRepo metaRepo;
+    @Autowired
+    BlobStore blobStore;
+
+    @Override
+    public BookContentMetaEntity get(long bookId) {
+        return metaRepo.findById(bookId).orElse(null);
+    }
+
+    // хэш содержания уже посчитан хранилищем при записи; размер и тип берутся из сохраненного объекта
+    // дата загрузки меняется только если изменилось само содержание (а не, например, другие поля книги)
+    @Override
+    public BookContentMetaEntity update(long bookId, String sha256, int pageCount) {
+        BookContentMetaEntity meta = get(bookId);
+        if (meta == null) {
+            meta = new BookContentMetaEntity();
+            meta.setBookId(bookId);
+        }
+        if (!sha256.equals(meta.getSha256())) {
+            try {
+                meta.setSha256(sha256);
+                meta.setSize(blobStore.size(sha256));
+                meta.setMimeType(detectMimeType(sha256));
+                meta.setUploadedAt(new Date());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        meta.setPageCount(pageCount);
+        return metaRepo.save(meta);
+    }
+
+    @Override
+    public void delete(long bookId) {
+        if (metaRepo.existsById(bookId)) metaRepo.deleteById(bookId);
+    }
+
+    // определяет тип содержания по его первым байтам
+    String detectMimeType(String sha256) throws IOException {
+        byte[] pdfSignature = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+        byte[] head = new byte[pdfSignature.length];
+        try (InputStream in = blobStore.open(sha256)) {
+            int read = in.readNBytes(head, 0, head.length);
+            if (read == head.length && Arrays.equals(head, pdfSignature)) return "application/pdf";
+        }
+        return "application/octet-stream";
+    }
+}
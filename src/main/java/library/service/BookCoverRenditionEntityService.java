@@ -0,0 +1,67 @@
+package library.service;
+
+import library.cache.CoverCache;
+import library.dao.BookCoverRenditionEntityDao;
+import library.domain.BookCoverRenditionEntity;
+import library.domain.CoverSize;
+import library.repository.BookCoverRenditionEntityRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// уменьшенные копии обложек хранятся в хранилище объектов так же, как и сами обложки (с учетом ссылок)
+@Service
+public class BookCoverRenditionEntityService implements BookCoverRenditionEntityDao {
+    @Autowired
+    BookCoverRenditionEntityRepo renditionRepo;
+    @Autowired
+    BlobRefEntityService blobRefService;
+    @Autowired
+    CoverCache coverCache;
+
+    @Override
+    public BookCoverRenditionEntity get(long bookId, CoverSize size) {
+        return renditionRepo.findByBookIdAndSize(bookId, size).orElse(null);
+    }
+
+    @Override
+    public Map<Long, String> getHashes(Collection<Long> bookIds, CoverSize size) {
+        return renditionRepo.findByBookIdInAndSize(bookIds, size).stream()
+                .collect(Collectors.toMap(BookCoverRenditionEntity::getBookId, BookCoverRenditionEntity::getHash));
+    }
+
+    @Override
+    @Transactional
+    public void save(long bookId, CoverSize size, byte[] image, int width, int height) {
+        BookCoverRenditionEntity rendition = get(bookId, size);
+        String oldHash = null;
+        if (rendition == null) {
+            rendition = new BookCoverRenditionEntity();
+            rendition.setBookId(bookId);
+            rendition.setSize(size);
+        } else {
+            oldHash = rendition.getHash();
+        }
+        rendition.setHash(blobRefService.store(new ByteArrayResource(image)));
+        rendition.setWidth(width);
+        rendition.setHeight(height);
+        renditionRepo.save(rendition);
+        blobRefService.release(oldHash);
+        TransactionHooks.afterCommit(() -> coverCache.invalidate(bookId));
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll(long bookId) {
+        for (BookCoverRenditionEntity rendition : renditionRepo.findByBookId(bookId)) {
+            renditionRepo.delete(rendition);
+            blobRefService.release(rendition.getHash());
+        }
+        TransactionHooks.afterCommit(() -> coverCache.invalidate(bookId));
+    }
+}
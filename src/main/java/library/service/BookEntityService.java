@@ -1,22 +1,93 @@
 package library.service;
 
+import library.cache.BookCountCache;
+import library.cache.CoverCache;
+import library.cache.SearchResultCache;
 import library.dao.BookEntityDao;
+import library.dao.GeneralDao;
+import library.domain.BookContentMetaEntity;
+import library.domain.BookCoverRenditionEntity;
 import library.domain.BookEntity;
+import library.domain.CoverSize;
+import library.model.BookCard;
+import library.model.BookFilter;
+import library.model.CoverSprite;
+import library.model.KeysetPage;
+import library.model.PageCursor;
+import library.processing.BookProcessingPipeline;
+import library.processing.CoverRenderer;
 import library.repository.BookEntityRepo;
+import library.search.AutocompleteIndex;
+import library.search.BookFilterEngine;
+import library.search.BookSearchIndex;
+import library.search.FacetIndex;
+import library.search.SearchNormalizer;
+import library.storage.BlobStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class BookEntityService implements BookEntityDao {
+    // размер буфера, через который содержание книги копируется из БД в ответ
+    static final int CONTENT_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     BookEntityRepo bookRepo;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    BookContentMetaEntityService contentMetaService;
+    @Autowired
+    BlobStore blobStore;
+    @Autowired
+    BlobRefEntityService blobRefService;
+    @Autowired
+    BookCoverRenditionEntityService renditionService;
+    @Autowired
+    BookProcessingPipeline processingPipeline;
+    @Autowired
+    CoverCache coverCache;
+    @Autowired
+    BookSearchIndex searchIndex;
+    @Autowired
+    AutocompleteIndex autocompleteIndex;
+    @Autowired
+    SearchResultCache resultCache;
+    @Autowired
+    FacetIndex facetIndex;
+    @Autowired
+    BookCountCache countCache;
+    @Autowired
+    BookFilterEngine filterEngine;
 
     @Override
     public List<BookEntity> getAll() {
@@ -28,25 +99,120 @@ public class BookEntityService implements BookEntityDao {
         return bookRepo.getOne(id);
     }
 
+    // сохранение книги, ссылки на ее данные и метаданные - одна транзакция: при ошибке ссылки не меняются,
+    // объекты без ссылок удаляются из хранилища, а индексы и кэши обновляются только после фиксации
     @Override
+    @Transactional
     public BookEntity save(BookEntity obj) {
-        return bookRepo.save(obj);
+        // содержание и обложка потоком сохраняются в хранилище объектов, в таблице book остаются только их хэши;
+        // одинаковые данные хранятся один раз, книга лишь добавляет на них ссылку
+        String oldContentHash = obj.getId() == null ? null : bookRepo.getContentHash(obj.getId());
+        String oldImageHash = obj.getId() == null ? null : bookRepo.getImageHash(obj.getId());
+        boolean isNew = obj.getId() == null;
+        Long oldGenreId = isNew ? null : bookRepo.getGenreId(obj.getId());
+        InputStreamSource content = toSource(obj.getContentSource(), obj.getContent());
+        InputStreamSource image = toSource(obj.getImageSource(), obj.getImage());
+        if (content != null) obj.setContentHash(blobRefService.store(content));
+        if (image != null) obj.setImageHash(blobRefService.store(image));
+        obj.setContent(null);
+        obj.setImage(null);
+
+        // количество книг (всего и по жанрам) меняется вместе с сохранением книги - после фиксации транзакции
+        BookEntity saved;
+        countCache.beginChange();
+        try {
+            saved = bookRepo.save(obj);
+            countCache.saved(isNew, oldGenreId, genreIdOf(saved));
+        } finally {
+            TransactionHooks.afterCompletion(countCache::endChange);
+        }
+
+        // ссылки на замененные данные убираются (объекты без ссылок удаляются из хранилища после фиксации),
+        // данные, еще хранившиеся в таблицах book_content и book_cover, больше не нужны
+        if (content != null) blobRefService.release(oldContentHash);
+        if (image != null) blobRefService.release(oldImageHash);
+        if (content != null && obj.getId() != null) bookRepo.deleteTableContent(saved.getId());
+        if (image != null && obj.getId() != null) bookRepo.deleteTableImage(saved.getId());
+        // уменьшенные копии прежней обложки больше не соответствуют книге - новые изготовит фоновая обработка
+        if (image != null && oldImageHash != null && !oldImageHash.equals(saved.getImageHash()))
+            renditionService.deleteAll(saved.getId());
+
+        // метаданные содержания обновляются вместе с книгой
+        if (content != null)
+            contentMetaService.update(saved.getId(), saved.getContentHash(), saved.getPageCount());
+        else if (saved.getContentHash() == null && bookRepo.getContentLength(saved.getId()) == null)
+            contentMetaService.delete(saved.getId());       // содержания нет ни в хранилище, ни в таблице book_content
+
+        long id = saved.getId();
+        TransactionHooks.afterCommit(() -> {
+            coverCache.invalidate(id);
+            searchIndex.update(id);
+            autocompleteIndex.update(id);
+            facetIndex.update(id);
+            resultCache.bump();
+        });
+
+        // проверка pdf, подсчет страниц и миниатюры обложки выполняются в фоне, не задерживая ответ
+        processingPipeline.submit(id);
+
+        return saved;
+    }
+
+    private static Long genreIdOf(BookEntity book) {
+        return book.getGenre() == null ? null : book.getGenre().getId();
+    }
+
+    // источник новых данных поля книги: загруженный файл или массив байт (null, если новых данных нет)
+    private static InputStreamSource toSource(InputStreamSource source, byte[] bytes) {
+        if (source != null) return source;
+        if (bytes != null && bytes.length > 0) return new ByteArrayResource(bytes);
+        return null;
     }
 
+    // удаление книги и ссылок на ее данные - одна транзакция; объекты без ссылок удаляются после фиксации
     @Override
+    @Transactional
     public void delete(BookEntity object) {
-        bookRepo.delete(object);
+        long id = object.getId();
+        String contentHash = bookRepo.getContentHash(id);
+        String imageHash = bookRepo.getImageHash(id);
+        Long genreId = bookRepo.getGenreId(id);
+        renditionService.deleteAll(id);
+        countCache.beginChange();
+        try {
+            bookRepo.delete(object);
+            countCache.deleted(genreId);
+        } finally {
+            TransactionHooks.afterCompletion(countCache::endChange);
+        }
+        blobRefService.release(contentHash);
+        blobRefService.release(imageHash);
+        TransactionHooks.afterCommit(() -> {
+            coverCache.invalidate(id);
+            searchIndex.remove(id);
+            autocompleteIndex.remove(id);
+            facetIndex.remove(id);
+            resultCache.bump();
+        });
     }
 
+    // поиск по началу названия и фио автора - по нормализованным столбцам (их индексам), в том же виде ищется и текст;
+    // если по началу ничего не найдено - по вхождению в любом месте (без индекса)
     @Override
     public List<BookEntity> search(String ... searchString) {
         if (searchString.length == 1) searchString = new String[]{searchString[0], ""};
+        String name = SearchNormalizer.normalize(searchString[0]);
+        String fio = SearchNormalizer.normalize(searchString[1]);
 
         Locale locale = LocaleContextHolder.getLocale();
-        if ("en".equals(locale.toString()))
-            return bookRepo.findByNameContainingIgnoreCaseOrAuthorEnFioContainingIgnoreCaseOrderByName(searchString[0], searchString[1]);
-        else
-            return bookRepo.findByNameContainingIgnoreCaseOrAuthorRuFioContainingIgnoreCaseOrderByName(searchString[0], searchString[1]);
+        boolean en = "en".equals(locale.toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? bookRepo.findBySearchNameStartingWithOrAuthorSearchEnFioStartingWithOrderByName(name, fio)
+                        : bookRepo.findBySearchNameStartingWithOrAuthorSearchRuFioStartingWithOrderByName(name, fio),
+                () -> en
+                        ? bookRepo.findBySearchNameContainingOrAuthorSearchEnFioContainingOrderByName(name, fio)
+                        : bookRepo.findBySearchNameContainingOrAuthorSearchRuFioContainingOrderByName(name, fio));
     }
 
     @Override
@@ -64,22 +230,213 @@ public class BookEntityService implements BookEntityDao {
     @Override
     public Page<BookEntity> search(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString) {
         if (searchString.length == 1) searchString = new String[]{searchString[0], searchString[0]};
+        String name = SearchNormalizer.normalize(searchString[0]);
+        String fio = SearchNormalizer.normalize(searchString[1]);
 
         Locale locale = LocaleContextHolder.getLocale();
         Sort sort = Sort.by(sortDirection, sortField);
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
 
-        if ("en".equals(locale.toString()))
-            return bookRepo.findByNameContainingIgnoreCaseOrAuthorEnFioContainingIgnoreCaseOrderByName(searchString[0], searchString[1], pageRequest);
-        else
-            return bookRepo.findByNameContainingIgnoreCaseOrAuthorRuFioContainingIgnoreCaseOrderByName(searchString[0], searchString[1], pageRequest);
+        boolean en = "en".equals(locale.toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? bookRepo.existsBySearchNameStartingWithOrAuthorSearchEnFioStartingWith(name, fio)
+                        : bookRepo.existsBySearchNameStartingWithOrAuthorSearchRuFioStartingWith(name, fio),
+                () -> en
+                        ? bookRepo.findBySearchNameStartingWithOrAuthorSearchEnFioStartingWithOrderByName(name, fio, pageRequest)
+                        : bookRepo.findBySearchNameStartingWithOrAuthorSearchRuFioStartingWithOrderByName(name, fio, pageRequest),
+                () -> en
+                        ? bookRepo.findBySearchNameContainingOrAuthorSearchEnFioContainingOrderByName(name, fio, pageRequest)
+                        : bookRepo.findBySearchNameContainingOrAuthorSearchRuFioContainingOrderByName(name, fio, pageRequest));
     }
 
+    // списки книг читаются проекцией BookCard: столбцы content и image в них не участвуют;
+    // результаты списков кэшируются (SearchResultCache) до изменения каталога
     @Override
-    public List<BookEntity> findTopBooks(int limit) {
+    public List<BookCard> findTopBooks(int limit) {
         Sort sort = Sort.by(Sort.Direction.DESC, "viewCount");
         PageRequest pageRequest = PageRequest.of(0, limit, sort);
-        return bookRepo.findTopBooks(pageRequest);
+        return cached(resultKey("top", null, null, null, pageRequest), pageRequest,
+                () -> new PageImpl<>(bookRepo.findTopCards(pageRequest))).getContent();
+    }
+
+    @Override
+    public Page<BookCard> getCards(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection) {
+        Sort sort = Sort.by(sortDirection, sortField);
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
+        return cached(resultKey("all", null, null, null, pageRequest), pageRequest,
+                () -> withTotal(bookRepo.findAllCards(pageRequest), null));
+    }
+
+    // страница карточек с количеством книг из BookCountCache (всего или жанра genreId) вместо отдельного запроса COUNT
+    private Page<BookCard> withTotal(Slice<BookCard> slice, Long genreId) {
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), countBooks(genreId));
+    }
+
+    // количество книг (всего или жанра genreId); пока счетчики не загружены - запросом к БД
+    private long countBooks(Long genreId) {
+        if (countCache.isReady()) return genreId == null ? countCache.getTotal() : countCache.getGenreCount(genreId);
+        return genreId == null ? bookRepo.count() : bookRepo.countByGenreId(genreId);
+    }
+
+    // страница карточек из кэша результатов; при промахе выполняется query и ее результат кэшируется
+    private Page<BookCard> cached(SearchResultCache.Key key, PageRequest pageRequest, Supplier<Page<BookCard>> query) {
+        SearchResultCache.Result result = resultCache.get(key);
+        if (result != null) return new PageImpl<>(result.getCards(), pageRequest, result.getTotal());
+
+        long version = resultCache.getVersion();
+        Page<BookCard> page = query.get();
+        resultCache.put(key, page.getContent(), page.getTotalElements(), version);
+        return page;
+    }
+
+    private static SearchResultCache.Key resultKey(String type, String keywords, Long genreId, String cursor, PageRequest pageRequest) {
+        return new SearchResultCache.Key(type, LocaleContextHolder.getLocale().toString(), keywords, genreId, cursor,
+                pageRequest.getPageNumber(), pageRequest.getPageSize(), pageRequest.getSort().toString());
+    }
+
+    // просмотр по ключу (viewCount, id): страница читается по индексу начиная с позиции cursor, без OFFSET,
+    // поэтому последняя страница обходится так же дешево, как первая
+    @Override
+    public KeysetPage getCards(KeysetPage.Seek seek, String cursor, int pageSize, Sort.Direction sortDirection) {
+        return seekCards(seek, cursor, pageSize, sortDirection, null);
+    }
+
+    @Override
+    public KeysetPage findByGenre(KeysetPage.Seek seek, String cursor, int pageSize, Sort.Direction sortDirection, long genreId) {
+        return seekCards(seek, cursor, pageSize, sortDirection, genreId);
+    }
+
+    private KeysetPage seekCards(KeysetPage.Seek seek, String cursor, int pageSize, Sort.Direction sortDirection, Long genreId) {
+        // без позиции соседние страницы не определены - показывается первая
+        PageCursor parsed = PageCursor.parse(cursor);
+        if (parsed == null && (seek == KeysetPage.Seek.AFTER || seek == KeysetPage.Seek.BEFORE)) seek = KeysetPage.Seek.FIRST;
+        boolean fromEdge = seek == KeysetPage.Seek.FIRST || seek == KeysetPage.Seek.LAST;
+        PageCursor position = fromEdge ? null : parsed;
+        KeysetPage.Seek from = seek;
+
+        PageRequest pageRequest = PageRequest.of(0, pageSize, Sort.by(sortDirection, "viewCount", "id"));
+        String cursorKey = fromEdge ? from.name() : from.name() + ":" + cursor;
+        Page<BookCard> page = cached(resultKey(genreId == null ? "all" : "genre", null, genreId, cursorKey, pageRequest), pageRequest, () -> {
+            long total = countBooks(genreId);
+            // предыдущая и последняя страницы читаются от позиции (от конца) в обратном порядке и затем переворачиваются;
+            // последняя страница, как и при нумерации страниц, содержит остаток книг
+            boolean backward = from == KeysetPage.Seek.BEFORE || from == KeysetPage.Seek.LAST;
+            int size = from == KeysetPage.Seek.LAST && total % pageSize != 0 ? (int) (total % pageSize) : pageSize;
+            boolean ascending = (sortDirection == Sort.Direction.ASC) != backward;
+            PageRequest scan = PageRequest.of(0, size, Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, "viewCount", "id"));
+            Long viewCount = position == null ? null : position.getViewCount();
+            Long id = position == null ? null : position.getId();
+
+            List<BookCard> cards;
+            if (genreId == null) cards = ascending ? bookRepo.findCardsAfter(viewCount, id, scan)
+                                                   : bookRepo.findCardsBefore(viewCount, id, scan);
+            else cards = ascending ? bookRepo.findCardsByGenreAfter(genreId, viewCount, id, scan)
+                                   : bookRepo.findCardsByGenreBefore(genreId, viewCount, id, scan);
+            cards = new ArrayList<>(cards);
+            if (backward) Collections.reverse(cards);
+            return new PageImpl<>(cards, pageRequest, total);
+        });
+        return new KeysetPage(page.getContent(), page.getTotalElements());
+    }
+
+    // статистика кэша результатов списков
+    public SearchResultCache.Stats getResultCacheStats() {
+        return resultCache.getStats();
+    }
+
+    // поиск по ключевым словам выполняется по индексу в памяти (BookSearchIndex), а пока он строится - по полнотекстовым
+    // индексам БД (название, фио автора на языке локали, описание); результаты упорядочены по релевантности,
+    // поэтому sortField и sortDirection не используются. Кэшируются только результаты поиска по индексу в памяти
+    @Override
+    public Page<BookCard> searchCards(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString) {
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize);
+        if (searchIndex.isReady()) {
+            String query = String.join(" ", searchString);
+            return cached(resultKey("keywords", query, null, null, pageRequest), pageRequest, () -> {
+                BookSearchIndex.Result result = searchIndex.search(query, pageRequest.getOffset(), pageSize);
+                return new PageImpl<>(findCardsInOrder(result.getIds()), pageRequest, result.getTotal());
+            });
+        }
+
+        String query = toFulltextQuery(searchString);
+        if (query.isEmpty()) return Page.empty(pageRequest);
+
+        boolean en = "en".equals(LocaleContextHolder.getLocale().toString());
+        long total = en ? bookRepo.countFulltextEn(query) : bookRepo.countFulltextRu(query);
+        if (total == 0) return Page.empty(pageRequest);
+        List<Number> found = en ? bookRepo.searchFulltextEn(query, pageSize, pageRequest.getOffset())
+                                : bookRepo.searchFulltextRu(query, pageSize, pageRequest.getOffset());
+        List<Long> ids = found.stream().map(Number::longValue).collect(Collectors.toList());
+        return new PageImpl<>(findCardsInOrder(ids), pageRequest, total);
+    }
+
+    @Override
+    public String suggestSearch(String... searchString) {
+        return searchIndex.isReady() ? searchIndex.suggest(String.join(" ", searchString)) : null;
+    }
+
+    // фасеты считаются по индексам в памяти: найденные книги - битовая карта BookSearchIndex (или весь каталог),
+    // количество по значениям всех фасетов - один проход по ней (FacetIndex)
+    @Override
+    public FacetIndex.Facets getFacets(Long genreId, String... keywords) {
+        boolean byKeywords = keywords != null && keywords.length > 0;
+        if (!facetIndex.isReady() || (byKeywords && !searchIndex.isReady())) return null;
+        BitSet books = byKeywords ? searchIndex.findAll(String.join(" ", keywords)) : facetIndex.getAll();
+        Map<FacetIndex.Dimension, Long> selected = genreId == null ? Collections.emptyMap()
+                : Collections.singletonMap(FacetIndex.Dimension.GENRE, genreId);
+        return facetIndex.count(books, selected);
+    }
+
+    // фильтр выполняется по индексам в памяти (BookFilterEngine); книги, найденные по ключевым словам, упорядочены
+    // по релевантности, остальные - по убыванию рейтинга (при равном рейтинге - сначала новые)
+    @Override
+    public Page<BookCard> filterCards(BookFilter filter, int pageNumber, int pageSize) {
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize);
+        if (!facetIndex.isReady() || !searchIndex.isReady()) return Page.empty(pageRequest);
+        return cached(resultKey("filter", filter.toKey(), null, null, pageRequest), pageRequest, () -> {
+            BitSet books = filterEngine.filter(filter).getBooks();
+            List<Long> ids = filter.hasKeywords()
+                    ? searchIndex.search(filter.getKeywords(), books, pageRequest.getOffset(), pageSize).getIds()
+                    : facetIndex.rankByRating(books, pageRequest.getOffset(), pageSize);
+            return new PageImpl<>(findCardsInOrder(ids), pageRequest, books.cardinality());
+        });
+    }
+
+    // количество по жанрам считается без условия на жанр (сколько книг будет найдено при выборе другого жанра)
+    @Override
+    public FacetIndex.Facets getFilterFacets(BookFilter filter) {
+        if (!facetIndex.isReady() || !searchIndex.isReady()) return null;
+        if (filter == null) filter = new BookFilter();
+        BitSet books = filterEngine.filter(filter.withoutGenre()).getBooks();
+        Map<FacetIndex.Dimension, Long> selected = filter.getGenreId() == null ? Collections.emptyMap()
+                : Collections.singletonMap(FacetIndex.Dimension.GENRE, filter.getGenreId());
+        return facetIndex.count(books, selected);
+    }
+
+    @Override
+    public BookFilterEngine.Plan explainFilter(BookFilter filter) {
+        return filterEngine.filter(filter).getPlan();
+    }
+
+    // подсказки на языке текущей локали
+    @Override
+    public List<AutocompleteIndex.Suggestion> autocomplete(String prefix, int limit) {
+        return autocompleteIndex.suggest(prefix, limit, "en".equals(LocaleContextHolder.getLocale().toString()));
+    }
+
+    // запрос MATCH ... AGAINST в BOOLEAN MODE: ключевые слова без служебных символов (+ - * " и т.п. дают синтаксические ошибки);
+    // слова без операторов необязательны, поэтому выше оказываются книги, совпавшие с большим количеством слов
+    static String toFulltextQuery(String... keywords) {
+        return String.join(" ", keywords).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    // карточки книг в порядке ids
+    private List<BookCard> findCardsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return new ArrayList<>();
+        Map<Long, BookCard> cards = bookRepo.findCardsByIds(ids).stream()
+                .collect(Collectors.toMap(BookCard::getId, card -> card));
+        return ids.stream().map(cards::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
@@ -87,11 +444,195 @@ public class BookEntityService implements BookEntityDao {
         return bookRepo.getContent(id);
     }
 
+    // обложки, еще не перенесенные в хранилище объектов, читаются из таблицы book
+    @Override
+    public byte[] getImage(long id) {
+        return imageOf(bookRepo.findCover(id));
+    }
+
+    private byte[] imageOf(BookEntity cover) {
+        if (cover == null) return null;
+        if (cover.getImageHash() == null) return cover.getImage();
+        try {
+            return blobStore.get(cover.getImageHash());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BookEntity findCover(long id) {
+        return bookRepo.findCover(id);
+    }
+
+    @Override
+    public byte[] getImage(long id, CoverSize size) {
+        BookCoverRenditionEntity rendition = size == null ? null : getCoverRendition(id, size);
+        if (rendition == null) return getImage(id);
+        try {
+            return blobStore.get(rendition.getHash());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // обложки отдаются из кэша в памяти; при промахе обложка читается из хранилища и кэшируется.
+    // Пока уменьшенная копия не изготовлена, вместо нее возвращается исходная обложка (hash совпадает с imageHash)
+    @Override
+    public CoverCache.Cover getCover(long id, CoverSize size) {
+        CoverCache.Cover cover = coverCache.get(id, size);
+        if (cover != null) return cover;
+
+        long generation = coverCache.getGeneration();
+        if (size != null) {
+            BookCoverRenditionEntity rendition = renditionService.get(id, size);
+            if (rendition == null) return getCover(id, null);
+            try {
+                byte[] image = blobStore.get(rendition.getHash());
+                return coverCache.put(id, size, rendition.getHash(), bookRepo.getImageHash(id), image, generation);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // читаются только обложка и ее хэш, строка книги целиком (с содержанием) не загружается
+        BookEntity book = bookRepo.findCover(id);
+        byte[] image = imageOf(book);
+        if (image == null) return null;
+        return coverCache.put(id, null, book.getImageHash(), book.getImageHash(), image, generation);
+    }
+
+    // для спрайта читаются только хэши обложек: по одному запросу IN к таблице book и к таблице уменьшенных копий на всю страницу
+    @Override
+    public CoverSprite getCoverSprite(List<Long> ids, CoverSize size) {
+        Map<Long, Object[]> covers = bookRepo.findCoverHashes(ids).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> row));
+        Map<Long, String> renditions = renditionService.getHashes(ids, size);
+        List<CoverSprite.Cell> cells = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object[] cover = covers.get(id);
+            if (cover == null) cells.add(new CoverSprite.Cell(null, null, false));
+            else cells.add(new CoverSprite.Cell(renditions.get(id), (String) cover[1], cover[1] != null || cover[2] != null));
+        }
+        return new CoverSprite(size, cells);
+    }
+
+    // изображение спрайта собирается из уменьшенных копий (исходные обложки не читаются и не декодируются)
+    // и кэшируется по размеру и версии содержимого: повторные запросы той же страницы отдаются из кэша
+    @Override
+    public CoverCache.Cover getCoverSpriteImage(CoverSprite sprite) throws IOException {
+        String eTag = sprite.getETag();
+        CoverCache.Cover cached = coverCache.getSprite(sprite.getSize(), eTag);
+        if (cached != null) return cached;
+
+        List<byte[]> images = new ArrayList<>(sprite.getCells().size());
+        for (CoverSprite.Cell cell : sprite.getCells())
+            images.add(cell.getRenditionHash() != null ? blobStore.get(cell.getRenditionHash()) : null);
+        return coverCache.putSprite(sprite.getSize(), eTag, CoverRenderer.sprite(images, sprite.getSize()));
+    }
+
+    // статистика кэша обложек
+    public CoverCache.Stats getCoverCacheStats() {
+        return coverCache.getStats();
+    }
+
+    @Override
+    public BookCoverRenditionEntity getCoverRendition(long id, CoverSize size) {
+        return renditionService.get(id, size);
+    }
+
+    @Override
+    public String getImageHash(long id) {
+        return bookRepo.getImageHash(id);
+    }
+
     @Override
-    public Page<BookEntity> findByGenre(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, long genreId) {
+    public String getContentHash(long id) {
+        return bookRepo.getContentHash(id);
+    }
+
+    @Override
+    public Path getContentFile(long id) {
+        String hash = bookRepo.getContentHash(id);
+        return hash == null ? null : blobStore.getLocalPath(hash);
+    }
+
+    @Override
+    public BookContentMetaEntity getContentMeta(long id) {
+        return contentMetaService.get(id);
+    }
+
+    @Override
+    public Long getContentLength(long id) {
+        return bookRepo.getContentLength(id);
+    }
+
+    @Override
+    public void writeContent(long id, OutputStream out) throws IOException {
+        writeContent(id, 0, Long.MAX_VALUE, out);
+    }
+
+    // содержание, перенесенное в хранилище объектов, передается из него каналом (transferTo);
+    // содержание, оставшееся в таблице book_content, читается одним запросом как поток (getBinaryStream):
+    // начало до offset пропускается, затем length байт копируются через буфер фиксированного размера
+    @Override
+    public void writeContent(long id, long offset, long length, OutputStream out) throws IOException {
+        String hash = bookRepo.getContentHash(id);
+        if (hash != null) {
+            blobStore.transferTo(hash, offset, length, Channels.newChannel(out));
+            out.flush();
+            return;
+        }
+
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT content FROM book_content WHERE book_id = ?",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);     // MySQL: строка результата читается из сокета по мере чтения
+                ps.setLong(1, id);
+                return ps;
+            }, (ResultSetExtractor<Void>) rs -> {
+                if (!rs.next()) return null;
+                try (InputStream in = rs.getBinaryStream(1)) {
+                    if (in != null) copyRange(in, offset, length, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    // пропускает offset байт потока и копирует в out не больше length следующих байт
+    private static void copyRange(InputStream in, long offset, long length, OutputStream out) throws IOException {
+        long toSkip = offset;
+        while (toSkip > 0) {
+            long skipped = in.skip(toSkip);
+            if (skipped <= 0) {
+                if (in.read() < 0) return;      // поток закончился раньше offset
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+        byte[] buffer = new byte[CONTENT_BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) break;
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    @Override
+    public Page<BookCard> findByGenre(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, long genreId) {
         Sort sort = Sort.by(sortDirection, sortField);
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
-        return bookRepo.findByGenre(genreId, pageRequest);
+        return cached(resultKey("genre", null, genreId, null, pageRequest), pageRequest,
+                () -> withTotal(bookRepo.findCardsByGenre(genreId, pageRequest), genreId));
     }
 
     @Override
@@ -99,9 +640,16 @@ public class BookEntityService implements BookEntityDao {
         bookRepo.updateViewCount(id, viewCount);
     }
 
+    @Override
+    public void incrementViewCount(long id) {
+        bookRepo.incrementViewCount(id);
+    }
+
     @Override
     public void updateRating(long id, long totalRating, long totalViewCount, int avgRating) {
         bookRepo.updateRating(id, totalRating, totalViewCount, avgRating);
+        resultCache.bump();     // рейтинг показывается на карточках книг
+        facetIndex.update(id);
     }
 
     @Override
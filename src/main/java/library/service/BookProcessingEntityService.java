@@ -0,0 +1,57 @@
+package library.service;
+
+import library.dao.BookProcessingEntityDao;
+import library.domain.BookProcessingEntity;
+import library.domain.ProcessingStatus;
+import library.repository.BookProcessingEntityRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class BookProcessingEntityService implements BookProcessingEntityDao {
+    @Autowired
+    BookProcessingEntityRepo processingRepo;
+
+    @Override
+    public BookProcessingEntity get(long bookId) {
+        return processingRepo.findById(bookId).orElse(null);
+    }
+
+    @Override
+    public void setStatus(long bookId, ProcessingStatus status, String message) {
+        BookProcessingEntity processing = get(bookId);
+        if (processing == null) {
+            processing = new BookProcessingEntity();
+            processing.setBookId(bookId);
+        }
+        processing.setStatus(status);
+        processing.setMessage(message);
+        processing.setUpdatedAt(new Date());
+        processingRepo.save(processing);
+    }
+
+    @Override
+    public List<Long> findPending(int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        return processingRepo.findByStatusOrderByBookId(ProcessingStatus.PENDING, PageRequest.of(0, limit)).stream()
+                .map(BookProcessingEntity::getBookId)
+                .collect(Collectors.toList());
+    }
+
+    // обработка, начатая до остановки приложения (PROCESSING), выполняется заново
+    @Override
+    public int resetInterrupted() {
+        return processingRepo.updateStatus(ProcessingStatus.PROCESSING, ProcessingStatus.PENDING);
+    }
+
+    @Override
+    public Map<Long, ProcessingStatus> getUnfinishedStatuses(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) return Collections.emptyMap();
+        return processingRepo.findByBookIdInAndStatusNot(bookIds, ProcessingStatus.DONE).stream()
+                .collect(Collectors.toMap(BookProcessingEntity::getBookId, BookProcessingEntity::getStatus));
+    }
+}
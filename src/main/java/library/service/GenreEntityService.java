@@ -1,8 +1,10 @@
 package library.service;
 
 import library.dao.GenreEntityDao;
+import library.dao.GeneralDao;
 import library.domain.GenreEntity;
 import library.repository.GenreEntityRepo;
+import library.search.SearchNormalizer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.data.domain.Page;
@@ -38,13 +40,18 @@ public class GenreEntityService implements GenreEntityDao {
         genreRepo.delete(object);
     }
 
+    // поиск по началу названия (по индексу); если так ничего не найдено - по вхождению в любом месте (без индекса)
     @Override
     public List<GenreEntity> search(String... searchString) {
-        Locale locale = LocaleContextHolder.getLocale();
-        if ("en".equals(locale.toString()))
-            return genreRepo.findByEnNameContainingIgnoreCaseOrderByEnName(searchString[0]);
-        else
-            return genreRepo.findByRuNameContainingIgnoreCaseOrderByRuName(searchString[0]);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(LocaleContextHolder.getLocale().toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? genreRepo.findBySearchEnNameStartingWithOrderByEnName(text)
+                        : genreRepo.findBySearchRuNameStartingWithOrderByRuName(text),
+                () -> en
+                        ? genreRepo.findBySearchEnNameContainingOrderByEnName(text)
+                        : genreRepo.findBySearchRuNameContainingOrderByRuName(text));
     }
 
     @Override
@@ -59,15 +66,33 @@ public class GenreEntityService implements GenreEntityDao {
         return genreRepo.findAll(pageRequest);
     }
 
+    // постраничный поиск - так же: по началу, а если ничего не найдено - по вхождению
     @Override
     public Page<GenreEntity> search(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString) {
         Locale locale = LocaleContextHolder.getLocale();
         Sort sort = Sort.by(sortDirection, sortField);
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
 
-        if ("en".equals(locale.toString()))
-            return genreRepo.findByEnNameContainingIgnoreCaseOrderByEnName(searchString[0], pageRequest);
-        else
-            return genreRepo.findByRuNameContainingIgnoreCaseOrderByRuName(searchString[0], pageRequest);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(locale.toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? genreRepo.existsBySearchEnNameStartingWith(text)
+                        : genreRepo.existsBySearchRuNameStartingWith(text),
+                () -> en
+                        ? genreRepo.findBySearchEnNameStartingWithOrderByEnName(text, pageRequest)
+                        : genreRepo.findBySearchRuNameStartingWithOrderByRuName(text, pageRequest),
+                () -> en
+                        ? genreRepo.findBySearchEnNameContainingOrderByEnName(text, pageRequest)
+                        : genreRepo.findBySearchRuNameContainingOrderByRuName(text, pageRequest));
+    }
+
+    // жанр по названию на языке текущей локали, точно (без учета регистра и различия е/ё); null, если не найден
+    @Override
+    public GenreEntity findByName(String name) {
+        String text = SearchNormalizer.normalize(name);
+        return "en".equals(LocaleContextHolder.getLocale().toString())
+                ? genreRepo.findFirstBySearchEnName(text)
+                : genreRepo.findFirstBySearchRuName(text);
     }
 }
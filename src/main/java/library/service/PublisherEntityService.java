@@ -1,8 +1,10 @@
 package library.service;
 
 import library.dao.PublisherEntityDao;
+import library.dao.GeneralDao;
 import library.domain.PublisherEntity;
 import library.repository.PublisherEntityRepo;
+import library.search.SearchNormalizer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.data.domain.Page;
@@ -38,13 +40,18 @@ public class PublisherEntityService implements PublisherEntityDao {
         publisherRepo.delete(object);
     }
 
+    // поиск по началу названия (по индексу); если так ничего не найдено - по вхождению в любом месте (без индекса)
     @Override
     public List<PublisherEntity> search(String... searchString) {
-        Locale locale = LocaleContextHolder.getLocale();
-        if ("en".equals(locale.toString()))
-            return publisherRepo.findByEnNameContainingIgnoreCaseOrderByEnName(searchString[0]);
-        else
-            return publisherRepo.findByRuNameContainingIgnoreCaseOrderByRuName(searchString[0]);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(LocaleContextHolder.getLocale().toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? publisherRepo.findBySearchEnNameStartingWithOrderByEnName(text)
+                        : publisherRepo.findBySearchRuNameStartingWithOrderByRuName(text),
+                () -> en
+                        ? publisherRepo.findBySearchEnNameContainingOrderByEnName(text)
+                        : publisherRepo.findBySearchRuNameContainingOrderByRuName(text));
     }
 
     @Override
@@ -59,15 +66,33 @@ public class PublisherEntityService implements PublisherEntityDao {
         return publisherRepo.findAll(pageRequest);
     }
 
+    // постраничный поиск - так же: по началу, а если ничего не найдено - по вхождению
     @Override
     public Page<PublisherEntity> search(int pageNumber, int pageSize, String sortField, Sort.Direction sortDirection, String... searchString) {
         Locale locale = LocaleContextHolder.getLocale();
         Sort sort = Sort.by(sortDirection, sortField);
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
 
-        if ("en".equals(locale.toString()))
-            return publisherRepo.findByEnNameContainingIgnoreCaseOrderByEnName(searchString[0], pageRequest);
-        else
-            return publisherRepo.findByRuNameContainingIgnoreCaseOrderByRuName(searchString[0], pageRequest);
+        String text = SearchNormalizer.normalize(searchString[0]);
+        boolean en = "en".equals(locale.toString());
+        return GeneralDao.prefixOrContaining(
+                () -> en
+                        ? publisherRepo.existsBySearchEnNameStartingWith(text)
+                        : publisherRepo.existsBySearchRuNameStartingWith(text),
+                () -> en
+                        ? publisherRepo.findBySearchEnNameStartingWithOrderByEnName(text, pageRequest)
+                        : publisherRepo.findBySearchRuNameStartingWithOrderByRuName(text, pageRequest),
+                () -> en
+                        ? publisherRepo.findBySearchEnNameContainingOrderByEnName(text, pageRequest)
+                        : publisherRepo.findBySearchRuNameContainingOrderByRuName(text, pageRequest));
+    }
+
+    // издательство по названию на языке текущей локали, точно (без учета регистра и различия е/ё); null, если не найден
+    @Override
+    public PublisherEntity findByName(String name) {
+        String text = SearchNormalizer.normalize(name);
+        return "en".equals(LocaleContextHolder.getLocale().toString())
+                ? publisherRepo.findFirstBySearchEnName(text)
+                : publisherRepo.findFirstBySearchRuName(text);
     }
 }
@@ -0,0 +1,39 @@
+package library.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Действия, выполняемые по завершении текущей транзакции (вне транзакции - сразу: изменения уже зафиксированы)
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    // после фиксации транзакции (при откате действие не выполняется)
+    public static void afterCommit(Runnable action) {
+        register(action, true, false);
+    }
+
+    // после отката транзакции (вне транзакции не выполняется - откатывать нечего)
+    public static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) register(action, false, true);
+    }
+
+    // после завершения транзакции - и фиксации, и отката
+    public static void afterCompletion(Runnable action) {
+        register(action, true, true);
+    }
+
+    private static void register(Runnable action, boolean onCommit, boolean onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED ? onCommit : onRollback) action.run();
+            }
+        });
+    }
+}
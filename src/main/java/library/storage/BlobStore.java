@@ -0,0 +1,29 @@
+package library.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Хранилище больших двоичных объектов (содержание и обложки книг). Объекты адресуются хэшем своего содержимого
+ * (sha256 в hex), поэтому одинаковые данные хранятся один раз, а сохраненный объект никогда не меняется.
+ * В БД хранится только хэш объекта.
+ */
+public interface BlobStore {
+    String put(InputStream in) throws IOException;      // сохранить объект, возвращает его хэш
+    String put(byte[] bytes) throws IOException;        // сохранить объект, возвращает его хэш
+
+    boolean exists(String hash);                        // есть ли объект с таким хэшем
+    long size(String hash) throws IOException;          // размер объекта в байтах
+    InputStream open(String hash) throws IOException;   // открыть объект на чтение
+    byte[] get(String hash) throws IOException;         // прочитать объект целиком (только для небольших объектов)
+
+    // передать в канал length байт объекта, начиная с байта offset
+    void transferTo(String hash, long offset, long length, WritableByteChannel target) throws IOException;
+
+    // путь к файлу объекта в локальной файловой системе (null, если хранилище не локальное) - нужен для sendfile
+    Path getLocalPath(String hash);
+
+    void delete(String hash) throws IOException;        // удалить объект
+}
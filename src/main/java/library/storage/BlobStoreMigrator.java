@@ -0,0 +1,71 @@
+package library.storage;
+
+import library.repository.BookEntityRepo;
+import library.service.BlobRefEntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Переносит содержание и обложки книг из таблиц book_content и book_cover в хранилище объектов, оставляя в таблице book
+ * только их хэши.
+ * Запускается при старте приложения, если library.storage.migrate-on-startup=true. Книги обрабатываются
+ * по одной (в памяти одновременно находятся данные только одной книги), небольшими порциями id.
+ * Повторный запуск безопасен: обрабатываются только книги, данные которых еще лежат в таблицах.
+ */
+@Component
+@ConditionalOnProperty(name = "library.storage.migrate-on-startup", havingValue = "true")
+public class BlobStoreMigrator implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(BlobStoreMigrator.class);
+    static final int BATCH_SIZE = 20;
+
+    final BookEntityRepo bookRepo;
+    final BlobRefEntityService blobRefService;
+
+    public BlobStoreMigrator(BookEntityRepo bookRepo, BlobRefEntityService blobRefService) {
+        this.bookRepo = bookRepo;
+        this.blobRefService = blobRefService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int moved = 0;
+        List<Long> ids;
+        while (!(ids = bookRepo.findIdsWithBlobsInTable(PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            for (Long id : ids) {
+                migrate(id);
+                moved++;
+            }
+            log.info("Moved blobs of {} books to the blob store", moved);
+        }
+        log.info("Blob store migration finished, {} books processed", moved);
+    }
+
+    // переносит содержание и обложку одной книги; уже перенесенные ссылки сохраняются
+    void migrate(long id) {
+        String oldContentHash = bookRepo.getContentHash(id);
+        String oldImageHash = bookRepo.getImageHash(id);
+        String contentHash = oldContentHash;
+        String imageHash = oldImageHash;
+
+        byte[] content = bookRepo.getContent(id);
+        if (content != null && content.length > 0) contentHash = blobRefService.store(new ByteArrayResource(content));
+
+        byte[] image = bookRepo.getImage(id);
+        if (image != null && image.length > 0) imageHash = blobRefService.store(new ByteArrayResource(image));
+
+        bookRepo.replaceBlobsWithHashes(id, contentHash, imageHash);
+        bookRepo.deleteTableContent(id);
+        bookRepo.deleteTableImage(id);
+        if (!Objects.equals(contentHash, oldContentHash)) blobRefService.release(oldContentHash);
+        if (!Objects.equals(imageHash, oldImageHash)) blobRefService.release(oldImageHash);
+    }
+}
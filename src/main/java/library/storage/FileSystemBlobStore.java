@@ -0,0 +1,162 @@
+package library.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Хранилище объектов в локальном каталоге. Файл объекта лежит по пути root/ab/cd/abcd..., где abcd... - sha256
+ * его содержимого (двухуровневое разбиение не дает каталогам разрастаться до сотен тысяч файлов).
+ * Новый объект сначала пишется во временный файл (хэш считается по ходу записи), сбрасывается на диск
+ * и только потом атомарно переименовывается в свой окончательный путь; после переименования сбрасывается и каталог,
+ * иначе при сбое питания новое имя файла может пропасть, хотя его содержимое уже на диске.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;        // корневой каталог хранилища
+    private final Path tmp;         // каталог временных файлов (на том же разделе, что и объекты, для атомарного rename)
+
+    public FileSystemBlobStore(@Value("${library.storage.root:./blob-store}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath();
+        this.tmp = this.root.resolve("tmp");
+        Files.createDirectories(tmp);
+    }
+
+    @Override
+    public String put(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        Path tmpFile = Files.createTempFile(tmp, "blob", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+                    while (bb.hasRemaining()) channel.write(bb);
+                }
+                channel.force(true);    // объект считается сохраненным только после сброса на диск
+            }
+
+            String hash = toHex(digest.digest());
+            Path target = pathOf(hash);
+            if (Files.exists(target)) return hash;     // такое содержимое уже хранится
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmpFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // тот же объект параллельно сохранил другой поток - это нормально
+            }
+            syncDirectory(target.getParent());     // переименование считается сохраненным после сброса каталога
+            return hash;
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public String put(byte[] bytes) throws IOException {
+        return put(new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    @Override
+    public long size(String hash) throws IOException {
+        return Files.size(pathOf(hash));
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(pathOf(hash));
+    }
+
+    @Override
+    public byte[] get(String hash) throws IOException {
+        return Files.readAllBytes(pathOf(hash));
+    }
+
+    // в канал файла или сокета FileChannel.transferTo передает данные средствами ОС (sendfile, без копирования
+    // в память JVM); любой другой канал (например, обертка Channels.newChannel над OutputStream ответа) получает
+    // данные через один буфер - копирования при этом не избежать, поэтому transferTo для него не вызывается
+    @Override
+    public void transferTo(String hash, long offset, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+            long end = offset + Math.min(length, channel.size() - offset);
+            long position = offset;
+            if (target instanceof FileChannel || target instanceof SelectableChannel) {
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) break;
+                    position += transferred;
+                }
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(end - position, 0)));
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) target.write(buffer);
+                position += read;
+            }
+        }
+    }
+
+    @Override
+    public Path getLocalPath(String hash) {
+        return pathOf(hash);
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(pathOf(hash));
+    }
+
+    // сброс на диск записи каталога (нового имени файла); не все ОС позволяют открыть каталог как канал -
+    // там это не поддерживается и пропускается
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            // Windows: каталог нельзя открыть на чтение как файл
+        }
+    }
+
+    // путь к файлу объекта: root/ab/cd/abcd...
+    Path pathOf(String hash) {
+        if (hash == null || !hash.matches("[0-9a-f]{64}"))
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // SHA-256 обязан поддерживаться любой JVM
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
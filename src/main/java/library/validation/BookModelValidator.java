@@ -95,7 +95,7 @@ public class BookModelValidator implements Validator {
         }
 
         // проверка наличия изображения (обложки)
-        if (model.getImage() == null) {
+        if (model.getImage() == null && (model.getImageHash() == null || model.getImageHash().isEmpty())) {
             MultipartFile uploadedImg = model.getUploadedImage();
             if (uploadedImg == null || uploadedImg.getSize() < 199)
                 errors.rejectValue("uploadedImage", "required_img", getLocalizedMess("required_img"));
@@ -0,0 +1,8 @@
+# Изменение таблицы library.book. Содержание и обложка книги переносятся в хранилище объектов (BlobStore),
+# в таблице остаются только ссылки на них (sha256). Старые поля content и image сохраняются до переноса
+# данных (см. BlobStoreMigrator).
+
+
+ALTER TABLE `library`.`book`
+    ADD COLUMN content_hash CHAR(64) NULL AFTER content,
+    ADD COLUMN image_hash CHAR(64) NULL AFTER image;
@@ -0,0 +1,19 @@
+# Создание таблицы library.blob_ref. Счетчики ссылок на объекты хранилища (содержание и обложки книг).
+# Одинаковые данные хранятся в хранилище один раз; объект удаляется из хранилища, когда на него не остается ссылок.
+
+
+CREATE TABLE `library`.`blob_ref` (
+        hash char(64) NOT NULL,
+        ref_count int NOT NULL DEFAULT '0',
+        created_at datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+        PRIMARY KEY (hash)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+
+INSERT INTO `library`.`blob_ref` (hash, ref_count)
+    SELECT hash, COUNT(*) FROM (
+        SELECT content_hash AS hash FROM `library`.`book` WHERE content_hash IS NOT NULL
+        UNION ALL
+        SELECT image_hash AS hash FROM `library`.`book` WHERE image_hash IS NOT NULL
+    ) refs
+    GROUP BY hash;
@@ -0,0 +1,27 @@
+# Создание таблиц library.book_processing и library.book_cover_rendition.
+# book_processing - состояние фоновой обработки книги после загрузки (проверка pdf, подсчет страниц, миниатюры обложки).
+# book_cover_rendition - уменьшенные копии обложки книги (ссылки на объекты хранилища).
+
+
+CREATE TABLE `library`.`book_processing` (
+        book_id bigint NOT NULL,
+        status varchar(20) NOT NULL,
+        message varchar(500) DEFAULT NULL,
+        updated_at datetime NOT NULL,
+        PRIMARY KEY (book_id),
+        KEY idx_processing_status (status),
+        CONSTRAINT fk_processing_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+
+CREATE TABLE `library`.`book_cover_rendition` (
+        id bigint NOT NULL AUTO_INCREMENT,
+        book_id bigint NOT NULL,
+        size varchar(10) NOT NULL,
+        hash char(64) NOT NULL,
+        width int NOT NULL,
+        height int NOT NULL,
+        PRIMARY KEY (id),
+        UNIQUE KEY book_size_UNIQUE (book_id, size),
+        CONSTRAINT fk_rendition_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
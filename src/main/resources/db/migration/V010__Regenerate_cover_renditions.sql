@@ -0,0 +1,7 @@
+# Добавлены уменьшенные копии обложек размеров SHELF и FULL. Все книги ставятся в очередь фоновой обработки,
+# которая изготовит недостающие копии (незавершенная обработка возобновляется при запуске приложения).
+
+
+INSERT INTO `library`.`book_processing` (book_id, status, updated_at)
+    SELECT id, 'PENDING', NOW() FROM `library`.`book`
+    ON DUPLICATE KEY UPDATE status = 'PENDING', message = NULL, updated_at = NOW();
@@ -0,0 +1,14 @@
+# Создание таблицы library.backfill_checkpoint. Контрольные точки Java-миграций, переносящих данные порциями
+# (см. library.migration.ChunkedBackfillMigration): прерванный перенос продолжается с последней сохраненной порции.
+# Таблицу создают и сами такие миграции (V006, V011 выполняются раньше этой), поэтому - IF NOT EXISTS.
+
+
+CREATE TABLE IF NOT EXISTS `library`.`backfill_checkpoint` (
+        name varchar(200) NOT NULL,
+        last_id bigint NOT NULL,
+        rows_done bigint NOT NULL DEFAULT '0',
+        started_at datetime NOT NULL,
+        updated_at datetime NOT NULL,
+        finished_at datetime DEFAULT NULL,
+        PRIMARY KEY (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
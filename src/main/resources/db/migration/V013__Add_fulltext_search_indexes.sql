@@ -0,0 +1,12 @@
+# Полнотекстовые индексы для поиска книг по ключевым словам (вместо LIKE '%...%', который просматривает всю таблицу).
+# Парсер ngram разбивает текст на n-граммы (ngram_token_size, по умолчанию 2 символа), поэтому работает
+# для кириллицы и находит слова по их части. InnoDB создает не более одного FULLTEXT индекса за один ALTER TABLE.
+
+
+ALTER TABLE `library`.`book` ADD FULLTEXT INDEX ft_book_name (name) WITH PARSER ngram;
+
+ALTER TABLE `library`.`book` ADD FULLTEXT INDEX ft_book_descr (descr) WITH PARSER ngram;
+
+ALTER TABLE `library`.`author` ADD FULLTEXT INDEX ft_author_ru_fio (ru_fio) WITH PARSER ngram;
+
+ALTER TABLE `library`.`author` ADD FULLTEXT INDEX ft_author_en_fio (en_fio) WITH PARSER ngram;
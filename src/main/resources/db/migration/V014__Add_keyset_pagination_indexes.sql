@@ -0,0 +1,8 @@
+# Индексы для постраничного просмотра каталога по ключу (keyset): страница - это следующие N строк индекса
+# после (view_count, id) последней книги предыдущей страницы, поэтому последняя страница читается так же быстро,
+# как первая (без OFFSET, пропускающего все предыдущие строки).
+
+
+ALTER TABLE `library`.`book` ADD INDEX idx_book_view_count_id (view_count, id);
+
+ALTER TABLE `library`.`book` ADD INDEX idx_book_genre_view_count_id (genre_id, view_count, id);
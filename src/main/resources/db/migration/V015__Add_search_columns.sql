@@ -0,0 +1,28 @@
+# Нормализованные столбцы для поиска по названиям книг, фио авторов, названиям издательств и жанров (оба языка).
+# Значения приведены к виду SearchNormalizer (нижний регистр, ё -> е) и заполняются приложением при сохранении,
+# поэтому сравниваются побайтно (utf8mb4_bin) и поиск по началу строки (LIKE 'текст%') идет по индексу,
+# без upper() по каждой строке. Индексы - по первым 32 символам: для поиска по началу этого достаточно.
+# Существующие строки заполняются Java-миграциями V016-V019 (порциями, см. library.migration.ChunkedBackfillMigration).
+
+
+ALTER TABLE `library`.`book`
+    ADD COLUMN search_name VARCHAR(150) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER name,
+    ADD INDEX idx_book_search_name (search_name(32));
+
+ALTER TABLE `library`.`author`
+    ADD COLUMN search_ru_fio VARCHAR(70) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER en_fio,
+    ADD COLUMN search_en_fio VARCHAR(70) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER search_ru_fio,
+    ADD INDEX idx_author_search_ru_fio (search_ru_fio(32)),
+    ADD INDEX idx_author_search_en_fio (search_en_fio(32));
+
+ALTER TABLE `library`.`publisher`
+    ADD COLUMN search_ru_name VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER en_name,
+    ADD COLUMN search_en_name VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER search_ru_name,
+    ADD INDEX idx_publisher_search_ru_name (search_ru_name(32)),
+    ADD INDEX idx_publisher_search_en_name (search_en_name(32));
+
+ALTER TABLE `library`.`genre`
+    ADD COLUMN search_ru_name VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER en_name,
+    ADD COLUMN search_en_name VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL AFTER search_ru_name,
+    ADD INDEX idx_genre_search_ru_name (search_ru_name(32)),
+    ADD INDEX idx_genre_search_en_name (search_en_name(32));
@@ -0,0 +1,134 @@
+package library.controllers.entites;
+
+import library.storage.BlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Редактирование книги с загрузкой новой обложки и удаление книги: строка book, ссылки на объекты хранилища
+// и сами объекты меняются согласованно (замененная или освобожденная обложка удаляется после фиксации)
+@SpringBootTest
+@AutoConfigureMockMvc
+class BookBlobRefTest {
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    BlobStore blobStore;
+
+    long bookId;
+    String isbn;
+    String oldHash;
+    String newHash;
+
+    @BeforeEach
+    void insertBook() throws Exception {
+        isbn = String.valueOf(1_000_000_000_000L + new Random().nextInt(1_000_000_000));
+        oldHash = blobStore.put(cover("old cover " + isbn));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO book (name, page_count, isbn, genre_id, " +
+                    "author_id, publish_year, publisher_id, image_hash) VALUES ('blob ref test', 10, ?, " +
+                    "(SELECT MIN(id) FROM genre), (SELECT MIN(id) FROM author), 2021, (SELECT MIN(id) FROM publisher), ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, isbn);
+            ps.setString(2, oldHash);
+            return ps;
+        }, keyHolder);
+        bookId = keyHolder.getKey().longValue();
+        jdbc.update("INSERT INTO blob_ref (hash, ref_count) VALUES (?, 1)", oldHash);
+    }
+
+    @AfterEach
+    void deleteBook() throws Exception {
+        jdbc.update("DELETE FROM book WHERE id = ?", bookId);
+        for (String hash : Arrays.asList(oldHash, newHash)) {
+            if (hash == null) continue;
+            jdbc.update("DELETE FROM blob_ref WHERE hash = ?", hash);
+            blobStore.delete(hash);
+        }
+    }
+
+    // обложка - произвольные байты длиннее 199 (меньшие файлы обложкой не считаются)
+    private static byte[] cover(String text) {
+        byte[] bytes = Arrays.copyOf(text.getBytes(StandardCharsets.UTF_8), 512);
+        Arrays.fill(bytes, text.length(), bytes.length, (byte) '.');
+        return bytes;
+    }
+
+    @Test
+    void editWithUploadReplacesCover() throws Exception {
+        Map<String, Object> book = jdbc.queryForMap("SELECT a.ru_fio, g.ru_name AS genre, p.ru_name AS publisher " +
+                "FROM book b JOIN author a ON a.id = b.author_id JOIN genre g ON g.id = b.genre_id " +
+                "JOIN publisher p ON p.id = b.publisher_id WHERE b.id = ?", bookId);
+        byte[] upload = cover("new cover " + isbn);
+
+        mvc.perform(multipart("/books/{id}", bookId)
+                        .file(new MockMultipartFile("uploadedImage", "cover.jpg", "image/jpeg", upload))
+                        .with(request -> {
+                            request.setMethod("PATCH");
+                            return request;
+                        })
+                        .param("id", String.valueOf(bookId))
+                        .param("name", "blob ref test (edited)")
+                        .param("pageCount", "10")
+                        .param("isbn", isbn)
+                        .param("genre", (String) book.get("genre"))
+                        .param("author", (String) book.get("ru_fio"))
+                        .param("publisher", (String) book.get("publisher"))
+                        .param("publishYear", "2021")
+                        .param("imageHash", oldHash)
+                        .sessionAttr(SessionLocaleResolver.LOCALE_SESSION_ATTRIBUTE_NAME, new Locale("ru"))
+                        .with(user("admin").roles("ADMIN"))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        newHash = jdbc.queryForObject("SELECT image_hash FROM book WHERE id = ?", String.class, bookId);
+        assertEquals("blob ref test (edited)", jdbc.queryForObject("SELECT name FROM book WHERE id = ?", String.class, bookId));
+        assertFalse(oldHash.equals(newHash));
+        assertTrue(blobStore.exists(newHash));
+        assertEquals(1, jdbc.queryForObject("SELECT ref_count FROM blob_ref WHERE hash = ?", Integer.class, newHash));
+        // прежняя обложка больше никем не используется - ее счетчик и объект удалены
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM blob_ref WHERE hash = ?", Integer.class, oldHash));
+        assertFalse(blobStore.exists(oldHash));
+    }
+
+    @Test
+    void deleteRemovesBookAndReleasesCover() throws Exception {
+        mvc.perform(delete("/books/{id}", bookId)
+                        .with(user("admin").roles("ADMIN"))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM book WHERE id = ?", Integer.class, bookId));
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM blob_ref WHERE hash = ?", Integer.class, oldHash));
+        assertFalse(blobStore.exists(oldHash));
+    }
+}
@@ -0,0 +1,209 @@
+package library.controllers.entites;
+
+import library.cache.CoverCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Запрос обложки не должен читать содержание книги (pdf): проверяются SQL-запросы и объем прочитанных через JDBC данных
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(BookCoverRequestTest.JdbcRecorderConfig.class)
+class BookCoverRequestTest {
+    static final int CONTENT_SIZE = 4 * 1024 * 1024;
+    static final int IMAGE_SIZE = 16 * 1024;
+
+    // столбец content (но не content_hash и не таблицы book_content, book_content_meta)
+    static final Pattern CONTENT_COLUMN = Pattern.compile("\\bcontent\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    JdbcRecorder recorder;
+    @Autowired
+    CoverCache coverCache;
+
+    byte[] image;
+    long bookId;
+
+    // книга в прежнем виде: содержание и обложка хранятся в таблицах book_content и book_cover,
+    // поэтому обложка читается через JDBC
+    @BeforeEach
+    void insertBook() {
+        Random random = new Random(42);
+        byte[] content = new byte[CONTENT_SIZE];
+        random.nextBytes(content);
+        image = new byte[IMAGE_SIZE];
+        random.nextBytes(image);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO book (name, page_count, isbn, genre_id, " +
+                    "author_id, publish_year, publisher_id) VALUES (?, 1, ?, (SELECT MIN(id) FROM genre), " +
+                    "(SELECT MIN(id) FROM author), 2021, (SELECT MIN(id) FROM publisher))", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, "cover request test");
+            ps.setString(2, UUID.randomUUID().toString().substring(0, 18));
+            return ps;
+        }, keyHolder);
+        bookId = keyHolder.getKey().longValue();
+        jdbc.update("INSERT INTO book_content (book_id, content) VALUES (?, ?)", bookId, content);
+        jdbc.update("INSERT INTO book_cover (book_id, image) VALUES (?, ?)", bookId, image);
+        coverCache.invalidate(bookId);
+    }
+
+    @AfterEach
+    void deleteBook() {
+        jdbc.update("DELETE FROM book WHERE id = ?", bookId);
+    }
+
+    @Test
+    void coverRequestDoesNotReadContent() throws Exception {
+        recorder.start();
+        byte[] body = mvc.perform(get("/books/img").param("id", String.valueOf(bookId)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        recorder.stop();
+
+        assertArrayEquals(image, body);
+        assertFalse(recorder.statements.isEmpty());
+        for (String sql : recorder.statements)
+            assertFalse(CONTENT_COLUMN.matcher(sql).find(), "запрос обложки читает содержание книги: " + sql);
+        // кроме самой обложки читаются только несколько коротких полей (id, хэш)
+        assertTrue(recorder.bytesRead < IMAGE_SIZE + 1024, "прочитано через JDBC " + recorder.bytesRead + " байт");
+    }
+
+    @Test
+    void cachedCoverRequestDoesNotQueryDatabase() throws Exception {
+        mvc.perform(get("/books/img").param("id", String.valueOf(bookId))).andExpect(status().isOk());
+
+        recorder.start();
+        mvc.perform(get("/books/img").param("id", String.valueOf(bookId))).andExpect(status().isOk());
+        recorder.stop();
+
+        assertTrue(recorder.statements.isEmpty(), "повторный запрос обложки обращается к БД: " + recorder.statements);
+    }
+
+    // Записывает SQL-запросы и объем прочитанных из результатов данных (только в потоке теста)
+    static class JdbcRecorder {
+        final List<String> statements = new ArrayList<>();
+        long bytesRead;
+        private volatile Thread thread;
+
+        void start() {
+            statements.clear();
+            bytesRead = 0;
+            thread = Thread.currentThread();
+        }
+
+        void stop() {
+            thread = null;
+        }
+
+        boolean isRecording() {
+            return thread == Thread.currentThread();
+        }
+
+        DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (result, method, args) -> {
+                if (result instanceof Connection) return wrapConnection((Connection) result);
+                return result;
+            });
+        }
+
+        private Connection wrapConnection(Connection connection) {
+            return proxy(Connection.class, connection, (result, method, args) -> {
+                if (isRecording() && method.getName().startsWith("prepare") && args != null && args[0] instanceof String)
+                    statements.add((String) args[0]);
+                if (result instanceof PreparedStatement) return wrapStatement((PreparedStatement) result);
+                return result;
+            });
+        }
+
+        private PreparedStatement wrapStatement(PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, (result, method, args) -> {
+                if (result instanceof ResultSet) return wrapResultSet((ResultSet) result);
+                return result;
+            });
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet) {
+            return proxy(ResultSet.class, resultSet, (result, method, args) -> {
+                if (isRecording()) {
+                    if (result instanceof byte[]) bytesRead += ((byte[]) result).length;
+                    else if (result instanceof Blob) bytesRead += ((Blob) result).length();
+                    else if (result instanceof String) bytesRead += ((String) result).length();
+                }
+                return result;
+            });
+        }
+
+        interface ResultHandler {
+            Object handle(Object result, Method method, Object[] args) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+            InvocationHandler invocationHandler = (p, method, args) -> {
+                try {
+                    return handler.handle(method.invoke(target, args), method, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+        }
+    }
+
+    @TestConfiguration
+    static class JdbcRecorderConfig {
+        @Bean
+        JdbcRecorder jdbcRecorder() {
+            return new JdbcRecorder();
+        }
+
+        @Bean
+        static BeanPostProcessor recordingDataSourcePostProcessor(ObjectProvider<JdbcRecorder> recorder) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource) return recorder.getObject().wrap((DataSource) bean);
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package library.controllers.entites;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Редактирование книги без загрузки новой обложки не должно терять сохраненную обложку (image_hash) и ссылку на нее
+@SpringBootTest
+@AutoConfigureMockMvc
+class BookEditFormTest {
+    static final String IMAGE_HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    long bookId;
+    String isbn;
+
+    @BeforeEach
+    void insertBook() {
+        isbn = String.valueOf(1_000_000_000_000L + new Random().nextInt(1_000_000_000));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO book (name, page_count, isbn, genre_id, " +
+                    "author_id, publish_year, publisher_id, image_hash) VALUES ('edit form test', 10, ?, " +
+                    "(SELECT MIN(id) FROM genre), (SELECT MIN(id) FROM author), 2021, (SELECT MIN(id) FROM publisher), ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, isbn);
+            ps.setString(2, IMAGE_HASH);
+            return ps;
+        }, keyHolder);
+        bookId = keyHolder.getKey().longValue();
+        jdbc.update("INSERT INTO blob_ref (hash, ref_count) VALUES (?, 1)", IMAGE_HASH);
+    }
+
+    @AfterEach
+    void deleteBook() {
+        jdbc.update("DELETE FROM book WHERE id = ?", bookId);
+        jdbc.update("DELETE FROM blob_ref WHERE hash = ?", IMAGE_HASH);
+    }
+
+    @Test
+    void editWithoutUploadKeepsCover() throws Exception {
+        Map<String, Object> book = jdbc.queryForMap("SELECT a.ru_fio, g.ru_name AS genre, p.ru_name AS publisher " +
+                "FROM book b JOIN author a ON a.id = b.author_id JOIN genre g ON g.id = b.genre_id " +
+                "JOIN publisher p ON p.id = b.publisher_id WHERE b.id = ?", bookId);
+
+        // форма редактирования: поля книги и сохраненная обложка (imageHash), новых файлов нет
+        mvc.perform(multipart("/books/{id}", bookId)
+                        .with(request -> {
+                            request.setMethod("PATCH");
+                            return request;
+                        })
+                        .param("id", String.valueOf(bookId))
+                        .param("name", "edit form test (edited)")
+                        .param("pageCount", "10")
+                        .param("isbn", isbn)
+                        .param("genre", (String) book.get("genre"))
+                        .param("author", (String) book.get("ru_fio"))
+                        .param("publisher", (String) book.get("publisher"))
+                        .param("publishYear", "2021")
+                        .param("imageHash", IMAGE_HASH)
+                        .sessionAttr(SessionLocaleResolver.LOCALE_SESSION_ATTRIBUTE_NAME, new Locale("ru"))
+                        .with(user("admin").roles("ADMIN"))
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        assertEquals("edit form test (edited)", jdbc.queryForObject("SELECT name FROM book WHERE id = ?", String.class, bookId));
+        assertEquals(IMAGE_HASH, jdbc.queryForObject("SELECT image_hash FROM book WHERE id = ?", String.class, bookId));
+        assertEquals(1, jdbc.queryForObject("SELECT ref_count FROM blob_ref WHERE hash = ?", Integer.class, IMAGE_HASH));
+    }
+}
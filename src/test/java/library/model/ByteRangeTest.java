@@ -0,0 +1,77 @@
+package library.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Разбор заголовка Range для ресурса длиной 1000 байт
+class ByteRangeTest {
+    static final long LENGTH = 1000;
+
+    // диапазоны в виде "start-end" для сравнения
+    private static String parse(String header) {
+        List<ByteRange> ranges = ByteRange.parse(header, LENGTH);
+        return ranges == null ? null
+                : ranges.stream().map(r -> r.getStart() + "-" + r.getEnd()).collect(Collectors.joining(","));
+    }
+
+    @Test
+    void singleRange() {
+        assertEquals("0-499", parse("bytes=0-499"));
+        assertEquals("bytes 0-499/1000", ByteRange.parse("bytes=0-499", LENGTH).get(0).toContentRange(LENGTH));
+    }
+
+    @Test
+    void suffixRange() {
+        assertEquals("500-999", parse("bytes=-500"));
+        assertEquals("0-999", parse("bytes=-5000"));        // суффикс длиннее ресурса - весь ресурс
+    }
+
+    @Test
+    void openEndedRange() {
+        assertEquals("900-999", parse("bytes=900-"));
+        assertEquals("900-999", parse("bytes=900-5000"));   // конец за пределами ресурса обрезается
+    }
+
+    @Test
+    void unsatisfiableRanges() {
+        assertTrue(ByteRange.parse("bytes=1000-1100", LENGTH).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", LENGTH).isEmpty());
+        assertTrue(ByteRange.parse("bytes=1000-,2000-2100", LENGTH).isEmpty());
+    }
+
+    @Test
+    void invalidHeaderIsIgnored() {
+        assertNull(parse(null));
+        assertNull(parse("items=0-10"));
+        assertNull(parse("bytes=500-100"));
+        assertNull(parse("bytes=abc-"));
+        assertNull(parse("bytes=" + String.join(",", Collections.nCopies(ByteRange.MAX_RANGES + 1, "0-1"))));
+    }
+
+    @Test
+    void overlappingRangesAreMerged() {
+        assertEquals("0-999", parse("bytes=0-999,0-999,0-999"));
+        assertEquals("0-599", parse("bytes=0-499,100-599"));
+        assertEquals("0-999", parse("bytes=0-,-500"));
+        assertEquals("0-299", parse("bytes=200-299,0-250"));
+    }
+
+    @Test
+    void adjacentRangesAreMerged() {
+        assertEquals("0-199", parse("bytes=0-99,100-199"));
+    }
+
+    @Test
+    void multipleRangesAreOrdered() {
+        assertEquals("0-9,100-199,900-999", parse("bytes=-100,100-199,0-9"));
+        // неудовлетворимые диапазоны пропускаются, остальные отдаются
+        assertEquals("0-9,500-599", parse("bytes=500-599,2000-3000,0-9"));
+    }
+}